@@ -17,16 +17,70 @@ import com.microsoft.identity.client.ISingleAccountPublicClientApplication;
 import com.microsoft.identity.client.PublicClientApplication;
 import com.microsoft.identity.client.SignInParameters;
 import com.microsoft.identity.client.exception.MsalException;
+import com.microsoft.identity.client.exception.MsalUiRequiredException;
 
 import java.net.URL;
 import java.util.Arrays;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 // Singleton class - the app only needs a single instance
 // of PublicClientApplication
 public class AuthenticationHelper extends BaseAuthenticationProvider {
+    // Cached tokens are treated as expired this long before
+    // their actual expiry to allow for clock skew
+    private static final long EXPIRY_MARGIN_MILLIS = TimeUnit.MINUTES.toMillis(2);
+    // Limits for the delay between failed background refreshes
+    private static final long MIN_RETRY_DELAY_MILLIS = TimeUnit.SECONDS.toMillis(15);
+    private static final long MAX_RETRY_DELAY_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
     private static AuthenticationHelper INSTANCE = null;
-    private ISingleAccountPublicClientApplication mPCA = null;
+    private volatile ISingleAccountPublicClientApplication mPCA = null;
+    // Completes once the MSAL application has been created, so that
+    // Graph requests made during startup wait for it
+    private final CompletableFuture<Void> mCreated = new CompletableFuture<>();
+    private volatile String mAccountId = null;
+    // Last token acquired, and the silent acquisition currently
+    // in flight, if any. Both are guarded by this
+    private IAuthenticationResult mCachedResult = null;
+    private CompletableFuture<IAuthenticationResult> mPendingAcquisition = null;
+    private ScheduledFuture<?> mScheduledRefresh = null;
+    private int mRefreshFailures = 0;
+    // Incremented on sign out, results of acquisitions started
+    // before then are dropped. Guarded by this
+    private long mGeneration = 0;
+
+    // MSAL only goes to the network for a new token once the cached one
+    // is within 5 minutes of expiry, so the background refresh is
+    // scheduled between the margin and the margin plus jitter before expiry
+    private long mRefreshMarginMillis = TimeUnit.MINUTES.toMillis(3);
+    private long mRefreshJitterMillis = TimeUnit.MINUTES.toMillis(1);
+
+    private final ScheduledExecutorService mRefreshExecutor =
+            Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "TokenRefresh");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    // Requests served from the in-memory token, requests that had to wait
+    // for an acquisition, and background refreshes that succeeded
+    private final AtomicLong mTokenHits = new AtomicLong();
+    private final AtomicLong mTokenMisses = new AtomicLong();
+    private final AtomicLong mBackgroundRefreshes = new AtomicLong();
+
+    // MSAL delivers its callbacks on the main thread, results are
+    // handed to this executor so that work chained onto them doesn't
+    // run on the UI thread
+    private volatile Executor mCallbackExecutor = GraphExecutors.getDefault().continuation();
+
     private final String[] mScopes = { "User.Read", "MailboxSettings.Read", "Calendars.ReadWrite" };
 
     private AuthenticationHelper(Context ctx, final IAuthenticationHelperCreatedListener listener) {
@@ -35,12 +89,14 @@ public class AuthenticationHelper extends BaseAuthenticationProvider {
                     @Override
                     public void onCreated(ISingleAccountPublicClientApplication application) {
                         mPCA = application;
+                        mCreated.complete(null);
                         listener.onCreated(INSTANCE);
                     }
 
                     @Override
                     public void onError(MsalException exception) {
                         Log.e("AUTH_HELPER", "Error creating MSAL application", exception);
+                        mCreated.completeExceptionally(exception);
                         listener.onError(exception);
                     }
                 });
@@ -109,11 +165,174 @@ public class AuthenticationHelper extends BaseAuthenticationProvider {
         // regarding account matching
         // https://github.com/AzureAD/microsoft-authentication-library-for-android/issues/1742
         //noinspection deprecation
+        final long start = System.nanoTime();
         mPCA.acquireTokenSilentAsync(mScopes, authority, getAuthenticationCallback(future));
+
+        // Time every call to MSAL, including background refreshes
+        future.whenComplete((result, exception) -> GraphMetrics.getInstance()
+                .recordTokenAcquisition(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
         return future;
     }
 
+    // Returns the ID of the account from the last successful
+    // token acquisition, or null if no user has signed in
+    public String getAccountId() {
+        return mAccountId;
+    }
+
+    // Returns the cached token while it is valid. Otherwise starts a
+    // silent acquisition, or joins the one already in flight, so concurrent
+    // requests share a single call to MSAL
+    public CompletableFuture<IAuthenticationResult> getCachedOrAcquireTokenSilently() {
+        synchronized (this) {
+            if (isValid(mCachedResult)) {
+                mTokenHits.incrementAndGet();
+                return CompletableFuture.completedFuture(mCachedResult);
+            }
+
+            mTokenMisses.incrementAndGet();
+            return getPendingAcquisition();
+        }
+    }
+
+    // Must be called while holding the lock on this
+    private CompletableFuture<IAuthenticationResult> getPendingAcquisition() {
+        if (mPendingAcquisition == null) {
+            final CompletableFuture<IAuthenticationResult> pending = mPCA != null
+                    ? acquireTokenSilently()
+                    : mCreated.thenCompose(created -> acquireTokenSilently());
+            mPendingAcquisition = pending;
+            pending.whenComplete((result, exception) -> {
+                synchronized (AuthenticationHelper.this) {
+                    if (mPendingAcquisition == pending) {
+                        mPendingAcquisition = null;
+                    }
+                }
+            });
+        }
+
+        return mPendingAcquisition;
+    }
+
+    // Sets how long before expiry the background refresh runs, and the
+    // maximum random delay added so that refreshes are spread out
+    public synchronized void setRefreshMargin(long marginMillis, long jitterMillis) {
+        mRefreshMarginMillis = marginMillis;
+        mRefreshJitterMillis = jitterMillis;
+
+        if (mCachedResult != null) {
+            scheduleRefresh(mCachedResult);
+        }
+    }
+
+    // Sets the executor that completes token futures
+    public void setCallbackExecutor(@NonNull Executor executor) {
+        mCallbackExecutor = executor;
+    }
+
+    public long getTokenCacheHits() {
+        return mTokenHits.get();
+    }
+
+    public long getTokenCacheMisses() {
+        return mTokenMisses.get();
+    }
+
+    public long getBackgroundRefreshCount() {
+        return mBackgroundRefreshes.get();
+    }
+
+    // Schedules a silent refresh ahead of the token's expiry
+    // Must be called while holding the lock on this
+    private void scheduleRefresh(@NonNull IAuthenticationResult result) {
+        if (result.getExpiresOn() == null) {
+            return;
+        }
+
+        long jitter = mRefreshJitterMillis > 0
+                ? ThreadLocalRandom.current().nextLong(mRefreshJitterMillis) : 0;
+        long delay = result.getExpiresOn().getTime() - mRefreshMarginMillis - jitter -
+                System.currentTimeMillis();
+
+        // A token that is already inside the refresh window
+        // means the last refresh did not produce a new one
+        scheduleRefreshIn(delay > 0 ? delay : getRetryDelay());
+    }
+
+    // Must be called while holding the lock on this
+    private void scheduleRefreshIn(long delayMillis) {
+        if (mScheduledRefresh != null) {
+            mScheduledRefresh.cancel(false);
+        }
+
+        mScheduledRefresh = mRefreshExecutor.schedule(this::refreshInBackground,
+                delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // Exponential backoff with jitter, based on the number of
+    // consecutive failed refreshes
+    // Must be called while holding the lock on this
+    private long getRetryDelay() {
+        long delay = MIN_RETRY_DELAY_MILLIS << Math.min(mRefreshFailures, 10);
+        delay = Math.min(delay, MAX_RETRY_DELAY_MILLIS);
+        mRefreshFailures++;
+        return delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+    }
+
+    private void refreshInBackground() {
+        CompletableFuture<IAuthenticationResult> pending;
+        synchronized (this) {
+            if (mCachedResult == null) {
+                // Signed out
+                return;
+            }
+
+            // Foreground requests that need a token join this acquisition
+            pending = getPendingAcquisition();
+        }
+
+        pending.whenComplete((result, exception) -> {
+            if (exception == null) {
+                // The next refresh is scheduled when the result is cached
+                mBackgroundRefreshes.incrementAndGet();
+                return;
+            }
+
+            Throwable cause = exception instanceof CompletionException
+                    ? exception.getCause() : exception;
+            Log.w("AUTH_HELPER", "Background token refresh failed", cause);
+
+            synchronized (AuthenticationHelper.this) {
+                // Retry unless the user has to sign in again, or the token has
+                // expired, in which case the next foreground request will refresh it
+                if (!(cause instanceof MsalUiRequiredException) && isValid(mCachedResult)) {
+                    scheduleRefreshIn(getRetryDelay());
+                }
+            }
+        });
+    }
+
+    private static boolean isValid(IAuthenticationResult result) {
+        return result != null && result.getExpiresOn() != null &&
+                result.getExpiresOn().getTime() - EXPIRY_MARGIN_MILLIS > System.currentTimeMillis();
+    }
+
     public void signOut() {
+        mAccountId = null;
+        synchronized (this) {
+            mGeneration++;
+            mCachedResult = null;
+            mRefreshFailures = 0;
+            // Requests waiting for a token of the signed-out account fail
+            if (mPendingAcquisition != null) {
+                mPendingAcquisition.cancel(false);
+                mPendingAcquisition = null;
+            }
+            if (mScheduledRefresh != null) {
+                mScheduledRefresh.cancel(false);
+                mScheduledRefresh = null;
+            }
+        }
         mPCA.signOut(new ISingleAccountPublicClientApplication.SignOutCallback() {
             @Override
             public void onSignOut() {
@@ -129,20 +348,42 @@ public class AuthenticationHelper extends BaseAuthenticationProvider {
 
     private AuthenticationCallback getAuthenticationCallback(
             CompletableFuture<IAuthenticationResult> future) {
+        final long generation;
+        synchronized (this) {
+            generation = mGeneration;
+        }
+
         return new AuthenticationCallback() {
             @Override
             public void onCancel() {
-                future.cancel(true);
+                mCallbackExecutor.execute(() -> future.cancel(true));
             }
 
             @Override
             public void onSuccess(IAuthenticationResult authenticationResult) {
-                future.complete(authenticationResult);
+                synchronized (AuthenticationHelper.this) {
+                    // Signed out while the token was being acquired, don't
+                    // cache it or schedule a refresh for the old account
+                    if (generation != mGeneration) {
+                        mCallbackExecutor.execute(() -> future.cancel(true));
+                        return;
+                    }
+
+                    mAccountId = authenticationResult.getAccount().getId();
+                    // Only a new token ends a run of failed refreshes
+                    if (mCachedResult == null || !authenticationResult.getAccessToken()
+                            .equals(mCachedResult.getAccessToken())) {
+                        mRefreshFailures = 0;
+                    }
+                    mCachedResult = authenticationResult;
+                    scheduleRefresh(authenticationResult);
+                }
+                mCallbackExecutor.execute(() -> future.complete(authenticationResult));
             }
 
             @Override
             public void onError(MsalException exception) {
-                future.completeExceptionally(exception);
+                mCallbackExecutor.execute(() -> future.completeExceptionally(exception));
             }
         };
     }
@@ -151,7 +392,7 @@ public class AuthenticationHelper extends BaseAuthenticationProvider {
     @Override
     public CompletableFuture<String> getAuthorizationTokenAsync(@NonNull URL requestUrl) {
         if (shouldAuthenticateRequestWithUrl(requestUrl)) {
-            return acquireTokenSilently()
+            return getCachedOrAcquireTokenSilently()
                     .thenApply(IAuthenticationResult::getAccessToken);
         }
 
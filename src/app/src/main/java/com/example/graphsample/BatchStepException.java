@@ -0,0 +1,18 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT License.
+
+package com.example.graphsample;
+
+// Thrown when an individual request inside a JSON batch fails
+public class BatchStepException extends Exception {
+    private final int mStatusCode;
+
+    public BatchStepException(int statusCode, String message) {
+        super(message);
+        mStatusCode = statusCode;
+    }
+
+    public int getStatusCode() {
+        return mStatusCode;
+    }
+}
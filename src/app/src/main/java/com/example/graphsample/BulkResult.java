@@ -0,0 +1,48 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT License.
+
+package com.example.graphsample;
+
+import androidx.annotation.Nullable;
+
+// The outcome of one item in a bulk operation
+// Exactly one of value or error is set, unless the operation
+// succeeded without returning a value (for example, a delete)
+public class BulkResult<T> {
+    private final int mIndex;
+    private final T mValue;
+    private final Throwable mError;
+
+    private BulkResult(int index, T value, Throwable error) {
+        mIndex = index;
+        mValue = value;
+        mError = error;
+    }
+
+    public static <T> BulkResult<T> success(int index, @Nullable T value) {
+        return new BulkResult<>(index, value, null);
+    }
+
+    public static <T> BulkResult<T> failure(int index, Throwable error) {
+        return new BulkResult<>(index, null, error);
+    }
+
+    // Position of the item in the list passed to the bulk operation
+    public int getIndex() {
+        return mIndex;
+    }
+
+    public boolean isSuccess() {
+        return mError == null;
+    }
+
+    @Nullable
+    public T getValue() {
+        return mValue;
+    }
+
+    @Nullable
+    public Throwable getError() {
+        return mError;
+    }
+}
@@ -5,33 +5,51 @@ package com.example.graphsample;
 
 import android.os.Bundle;
 import android.util.Log;
+import android.view.GestureDetector;
 import android.view.LayoutInflater;
+import android.view.MotionEvent;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.ListView;
+import android.widget.TextView;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.core.content.ContextCompat;
 import androidx.fragment.app.Fragment;
+import androidx.recyclerview.widget.DividerItemDecoration;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
 
+import com.google.android.material.button.MaterialButtonToggleGroup;
 import com.google.android.material.snackbar.BaseTransientBottomBar;
 import com.google.android.material.snackbar.Snackbar;
-import com.microsoft.graph.models.Event;
 
-import java.time.DayOfWeek;
+import java.time.LocalDate;
 import java.time.ZoneId;
-import java.time.ZonedDateTime;
-import java.time.temporal.ChronoUnit;
-import java.time.temporal.TemporalAdjusters;
+import java.time.format.DateTimeFormatter;
+import java.time.format.FormatStyle;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.Executor;
 
 public class CalendarFragment extends Fragment {
     private static final String TIME_ZONE = "timeZone";
+    private static final String SAVED_RANGE_MODE = "rangeMode";
+    private static final String SAVED_RANGE_DAY = "rangeDay";
+
+    // Ranges kept ready on each side of the visible one
+    private static final int PREFETCH_RADIUS = 1;
 
     private String mTimeZone;
 
-    private List<Event> mEventList = null;
+    private CalendarRange mRange = null;
+    private CalendarPrefetcher mPrefetcher = null;
+    private List<EventDisplayRow> mEventList = null;
+    private EventListAdapter mListAdapter = null;
+    private TextView mRangeTitle = null;
+    private boolean mIsStreaming = false;
+    private ICalendarPageListener mPageListener = null;
 
     public CalendarFragment() {}
 
@@ -51,6 +69,25 @@ public class CalendarFragment extends Fragment {
         if (getArguments() != null) {
             mTimeZone = getArguments().getString(TIME_ZONE);
         }
+
+        ZoneId tzId = GraphToIana.getZoneIdFromWindows(mTimeZone);
+        if (savedInstanceState != null && savedInstanceState.getString(SAVED_RANGE_DAY) != null) {
+            mRange = CalendarRange.containing(
+                    CalendarRange.Mode.valueOf(savedInstanceState.getString(SAVED_RANGE_MODE)),
+                    tzId, LocalDate.parse(savedInstanceState.getString(SAVED_RANGE_DAY)));
+        } else {
+            mRange = CalendarRange.current(CalendarRange.Mode.WEEK, tzId);
+        }
+
+        mPrefetcher = new CalendarPrefetcher(GraphHelper.getInstance(), mTimeZone,
+                PREFETCH_RADIUS);
+    }
+
+    @Override
+    public void onSaveInstanceState(@NonNull Bundle outState) {
+        super.onSaveInstanceState(outState);
+        outState.putString(SAVED_RANGE_MODE, mRange.getMode().name());
+        outState.putString(SAVED_RANGE_DAY, mRange.getFirstDay().toString());
     }
 
     @Nullable
@@ -58,50 +95,210 @@ public class CalendarFragment extends Fragment {
     public View onCreateView(@NonNull LayoutInflater inflater, @Nullable ViewGroup container, @Nullable Bundle savedInstanceState) {
         View view = inflater.inflate(R.layout.fragment_calendar, container, false);
 
-        showProgressBar();
+        final GraphHelper graphHelper = GraphHelper.getInstance();
+
+        // The adapter is kept for the life of the view, updates are
+        // diffed on the parsing pool so scroll position is kept
+        RecyclerView eventListView = view.findViewById(R.id.eventlist);
+        eventListView.setLayoutManager(new LinearLayoutManager(requireContext()));
+        DividerItemDecoration divider = new DividerItemDecoration(requireContext(),
+                DividerItemDecoration.VERTICAL);
+        divider.setDrawable(Objects.requireNonNull(
+                ContextCompat.getDrawable(requireContext(), R.drawable.event_list_divider)));
+        eventListView.addItemDecoration(divider);
+        mListAdapter = new EventListAdapter(graphHelper.getExecutors().parsing());
+        eventListView.setAdapter(mListAdapter);
+
+        // Navigation between ranges, with the buttons or by
+        // flinging the list sideways
+        mRangeTitle = view.findViewById(R.id.range_title);
+        view.findViewById(R.id.previous_range).setOnClickListener(v -> showRange(mRange.previous()));
+        view.findViewById(R.id.next_range).setOnClickListener(v -> showRange(mRange.next()));
+
+        final GestureDetector flingDetector = new GestureDetector(requireContext(),
+                new GestureDetector.SimpleOnGestureListener() {
+                    @Override
+                    public boolean onFling(MotionEvent start, @NonNull MotionEvent end,
+                                           float velocityX, float velocityY) {
+                        if (Math.abs(velocityX) < 2 * Math.abs(velocityY)) {
+                            return false;
+                        }
+
+                        showRange(velocityX < 0 ? mRange.next() : mRange.previous());
+                        return true;
+                    }
+                });
+        eventListView.addOnItemTouchListener(new RecyclerView.SimpleOnItemTouchListener() {
+            @Override
+            public boolean onInterceptTouchEvent(@NonNull RecyclerView recyclerView,
+                                                 @NonNull MotionEvent event) {
+                flingDetector.onTouchEvent(event);
+                return false;
+            }
+        });
+
+        MaterialButtonToggleGroup modeGroup = view.findViewById(R.id.range_mode);
+        modeGroup.check(mRange.getMode() == CalendarRange.Mode.WEEK
+                ? R.id.week_mode : R.id.month_mode);
+        modeGroup.addOnButtonCheckedListener((group, checkedId, isChecked) -> {
+            if (isChecked) {
+                showRange(mRange.withMode(checkedId == R.id.week_mode
+                        ? CalendarRange.Mode.WEEK : CalendarRange.Mode.MONTH));
+            }
+        });
+
+        loadRange(mRange);
+
+        return view;
+    }
+
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        // Downloads still in flight keep going for other callers
+        // and the caches, but no longer render into this view
+        if (mPageListener != null) {
+            GraphHelper.getInstance().removeCalendarPageListener(mPageListener);
+            mPageListener = null;
+        }
+    }
 
+    private void showRange(CalendarRange range) {
+        if (range.equals(mRange)) {
+            return;
+        }
+
+        mRange = range;
+        loadRange(range);
+    }
+
+    // Shows the events in the range
+    // Ranges next to the visible one are usually prefetched and shown
+    // right away. Otherwise events stored from a previous visit are
+    // shown while the request to Graph is in flight, and if there are
+    // none, each page from Graph is added to the list as it arrives
+    private void loadRange(final CalendarRange range) {
         final GraphHelper graphHelper = GraphHelper.getInstance();
+        mRangeTitle.setText(getRangeTitle(range));
 
-        ZoneId tzId = GraphToIana.getZoneIdFromWindows(mTimeZone);
-        // Get midnight of the first day of the week (assumed Sunday)
-        // in the user's timezone, then convert to UTC
-        ZonedDateTime startOfWeek = ZonedDateTime.now(tzId)
-                .with(TemporalAdjusters.previousOrSame(DayOfWeek.SUNDAY))
-                .truncatedTo(ChronoUnit.DAYS)
-                .withZoneSameInstant(ZoneId.of("UTC"));
+        mEventList = mPrefetcher.getIfReady(range);
+        mIsStreaming = false;
+        if (mEventList != null) {
+            addEventsToList();
+            hideProgressBar();
+        } else {
+            showProgressBar();
+        }
+
+        // The previous range's pages are no longer shown
+        if (mPageListener != null) {
+            graphHelper.removeCalendarPageListener(mPageListener);
+        }
+
+        // Results for a range that is no longer shown, or that arrive
+        // after the view is gone, are ignored. Both listeners are called
+        // on background threads, so they check once on the main thread
+        final Executor mainThread = graphHelper.getExecutors().mainThread();
+        mPageListener = page -> {
+            List<EventDisplayRow> rows = EventDisplayRow.fromSummaries(page);
+            mainThread.execute(() -> {
+                if (!range.equals(mRange) || !isAdded()) {
+                    return;
+                }
+
+                if (mEventList == null) {
+                    mEventList = new ArrayList<>();
+                    mIsStreaming = true;
+
+                    addEventsToList();
+                    hideProgressBar();
+                }
 
-        // Add 7 days to get the end of the week
-        ZonedDateTime endOfWeek = startOfWeek.plusDays(7);
+                if (mIsStreaming) {
+                    appendEventsToList(rows);
+                }
+            });
+        };
 
-        // Get the user's events
         graphHelper
-                .getCalendarView(startOfWeek, endOfWeek, mTimeZone)
-                .thenAccept(eventList -> {
+                .getCalendarView(range.getStart(), range.getEnd(), mTimeZone,
+                        cachedEvents -> {
+                            // Rows are prepared on the calling thread, only
+                            // setting them runs on the main thread
+                            List<EventDisplayRow> rows = EventDisplayRow.fromSummaries(cachedEvents);
+                            mainThread.execute(() -> {
+                                // Skip if events from Graph are already being shown
+                                if (range.equals(mRange) && isAdded() && mEventList == null) {
+                                    mEventList = rows;
+
+                                    addEventsToList();
+                                    hideProgressBar();
+                                }
+                            });
+                        },
+                        mPageListener)
+                // Format the events on the parsing pool before
+                // handing them to the main thread
+                .thenApplyAsync(EventDisplayRow::fromSummaries, graphHelper.getExecutors().parsing())
+                .thenAcceptAsync(eventList -> {
+                    mPrefetcher.put(range, eventList);
+                    if (!range.equals(mRange) || !isAdded()) {
+                        return;
+                    }
+
+                    // Rows that did not change are left as they are
                     mEventList = eventList;
 
                     addEventsToList();
                     hideProgressBar();
-                })
+
+                    // Load the neighbors once the visible range is done
+                    mPrefetcher.setVisibleRange(range);
+                }, graphHelper.getExecutors().mainThread())
                 .exceptionally(exception -> {
+                    if (!range.equals(mRange) || !isAdded()) {
+                        return null;
+                    }
+
                     hideProgressBar();
                     Log.e("GRAPH", "Error getting events", exception);
                     Snackbar.make(requireView(),
-                            Objects.requireNonNull(exception.getMessage()),
+                            GraphHelper.isThrottled(exception)
+                                    ? getString(R.string.graph_busy)
+                                    : Objects.requireNonNull(exception.getMessage()),
                             BaseTransientBottomBar.LENGTH_LONG).show();
                     return null;
                 });
+    }
 
-        return view;
+    // For example "Jan 15, 2023 – Jan 21, 2023" or "January 2023"
+    private static String getRangeTitle(CalendarRange range) {
+        if (range.getMode() == CalendarRange.Mode.MONTH) {
+            return range.getFirstDay().format(DateTimeFormatter.ofPattern("LLLL yyyy"));
+        }
+
+        DateTimeFormatter formatter = DateTimeFormatter.ofLocalizedDate(FormatStyle.MEDIUM);
+        return range.getFirstDay().format(formatter) + " – " +
+                range.getEndDay().minusDays(1).format(formatter);
     }
 
+    // Shows mEventList. Lists are never modified once
+    // submitted, as the adapter compares them in the background
     private void addEventsToList() {
-        requireActivity().runOnUiThread(() -> {
-            ListView eventListView = requireView().findViewById(R.id.eventlist);
+        requireActivity().runOnUiThread(() -> mListAdapter.submitList(mEventList));
+    }
 
-            EventListAdapter listAdapter = new EventListAdapter(getActivity(),
-                    R.layout.event_list_item, mEventList);
+    // Adds a page of events to the list currently shown
+    private void appendEventsToList(List<EventDisplayRow> page) {
+        requireActivity().runOnUiThread(() -> {
+            List<EventDisplayRow> eventList = new ArrayList<>(mEventList.size() + page.size());
+            eventList.addAll(mEventList);
+            eventList.addAll(page);
+            // Pages from a delta sync are not ordered by start time
+            eventList.sort(EventDisplayRow.START_ORDER);
+            mEventList = eventList;
 
-            eventListView.setAdapter(listAdapter);
+            addEventsToList();
         });
     }
 
@@ -0,0 +1,55 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT License.
+
+package com.example.graphsample;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// Passes each page of a calendar view download to every caller that
+// shares it. A listener added part way through is first given the
+// pages already delivered, so a caller that joins a download in
+// flight can render straight away instead of waiting for the end
+// A listener that throws is logged and skipped, so one caller
+// can't fail the download the others are sharing
+class CalendarPageFanOut implements ICalendarPageListener {
+    private final List<List<EventSummary>> mPages = new ArrayList<>();
+    private final List<ICalendarPageListener> mListeners = new ArrayList<>();
+
+    // Pages are delivered while holding the lock, so
+    // each listener sees them in order, exactly once
+    public synchronized void addListener(@NonNull ICalendarPageListener listener) {
+        mListeners.add(listener);
+        for (List<EventSummary> page : mPages) {
+            deliver(listener, page);
+        }
+    }
+
+    // Stops delivering pages to the listener, for example
+    // once the view it renders into has been destroyed
+    public synchronized void removeListener(@NonNull ICalendarPageListener listener) {
+        mListeners.remove(listener);
+    }
+
+    @Override
+    public synchronized void onPage(List<EventSummary> events) {
+        List<EventSummary> page = Collections.unmodifiableList(events);
+        mPages.add(page);
+        for (ICalendarPageListener listener : mListeners) {
+            deliver(listener, page);
+        }
+    }
+
+    private static void deliver(ICalendarPageListener listener, List<EventSummary> page) {
+        try {
+            listener.onPage(page);
+        } catch (RuntimeException exception) {
+            Log.e("GRAPH", "Calendar page listener failed", exception);
+        }
+    }
+}
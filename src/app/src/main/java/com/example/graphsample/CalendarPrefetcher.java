@@ -0,0 +1,91 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT License.
+
+package com.example.graphsample;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Keeps the events of the ranges around the visible calendar range
+// ready, so moving to the next or previous range renders at once
+// Holds at most the visible range plus the given number of ranges on
+// each side. Ranges that leave the window are dropped, and ranges
+// that enter it are loaded in the background through GraphHelper,
+// which also refreshes the local event store
+public class CalendarPrefetcher {
+    private final GraphHelper mGraphHelper;
+    private final String mTimeZone;
+    private final int mRadius;
+    private final Map<CalendarRange, CompletableFuture<List<EventDisplayRow>>> mWindow =
+            new ConcurrentHashMap<>();
+
+    public CalendarPrefetcher(@NonNull GraphHelper graphHelper, @NonNull String timeZone,
+                              int radius) {
+        mGraphHelper = graphHelper;
+        mTimeZone = timeZone;
+        mRadius = radius;
+    }
+
+    // Returns the rows for the range if they have been loaded
+    @Nullable
+    public List<EventDisplayRow> getIfReady(@NonNull CalendarRange range) {
+        CompletableFuture<List<EventDisplayRow>> rows = mWindow.get(range);
+        if (rows == null || !rows.isDone() || rows.isCompletedExceptionally()) {
+            return null;
+        }
+
+        return rows.join();
+    }
+
+    // Stores rows loaded for the visible range
+    public void put(@NonNull CalendarRange range, @NonNull List<EventDisplayRow> rows) {
+        mWindow.put(range, CompletableFuture.completedFuture(rows));
+    }
+
+    // Moves the window to be centered on the visible range, starting
+    // loads for the ranges on either side that aren't loaded yet
+    public void setVisibleRange(@NonNull CalendarRange visible) {
+        Set<CalendarRange> wanted = new HashSet<>();
+        wanted.add(visible);
+
+        CalendarRange previous = visible;
+        CalendarRange next = visible;
+        for (int i = 0; i < mRadius; i++) {
+            previous = previous.previous();
+            next = next.next();
+            wanted.add(previous);
+            wanted.add(next);
+        }
+
+        mWindow.keySet().retainAll(wanted);
+
+        for (CalendarRange range : wanted) {
+            if (!range.equals(visible) && !mWindow.containsKey(range)) {
+                prefetch(range);
+            }
+        }
+    }
+
+    private void prefetch(final CalendarRange range) {
+        final CompletableFuture<List<EventDisplayRow>> rows = mGraphHelper
+                .getCalendarView(range.getStart(), range.getEnd(), mTimeZone, cachedEvents -> {})
+                .thenApplyAsync(EventDisplayRow::fromSummaries, mGraphHelper.getExecutors().parsing());
+        mWindow.put(range, rows);
+
+        rows.exceptionally(exception -> {
+            // Allow the range to be loaded again
+            mWindow.remove(range, rows);
+            Log.w("GRAPH", "Unable to prefetch " + range, exception);
+            return null;
+        });
+    }
+}
@@ -0,0 +1,76 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT License.
+
+package com.example.graphsample;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.IOException;
+
+import okhttp3.MediaType;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.ForwardingSource;
+import okio.Okio;
+
+// Wraps a response body to count the bytes actually read from it
+// Graph responses are usually gzip compressed or chunked, so the body's
+// contentLength() is -1 once OkHttp has decoded it. The listener is
+// called once, when the body is read to the end or closed
+public class CountingResponseBody extends ResponseBody {
+    private final ResponseBody mBody;
+    private final IResponseBodyListener mListener;
+    private final BufferedSource mSource;
+    private long mBytes = 0;
+    private boolean mIsReported = false;
+
+    public CountingResponseBody(@NonNull ResponseBody body,
+                                @NonNull IResponseBodyListener listener) {
+        mBody = body;
+        mListener = listener;
+        mSource = Okio.buffer(new ForwardingSource(body.source()) {
+            @Override
+            public long read(@NonNull Buffer sink, long byteCount) throws IOException {
+                long read = super.read(sink, byteCount);
+                if (read == -1) {
+                    report(true);
+                } else {
+                    mBytes += read;
+                }
+                return read;
+            }
+
+            @Override
+            public void close() throws IOException {
+                report(false);
+                super.close();
+            }
+        });
+    }
+
+    @Nullable
+    @Override
+    public MediaType contentType() {
+        return mBody.contentType();
+    }
+
+    @Override
+    public long contentLength() {
+        return mBody.contentLength();
+    }
+
+    @NonNull
+    @Override
+    public BufferedSource source() {
+        return mSource;
+    }
+
+    private synchronized void report(boolean complete) {
+        if (!mIsReported) {
+            mIsReported = true;
+            mListener.onBodyRead(mBytes, complete);
+        }
+    }
+}
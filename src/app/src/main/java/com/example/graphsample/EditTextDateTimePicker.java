@@ -19,13 +19,14 @@ import java.time.format.FormatStyle;
 // Class to wrap an EditText control to act as a date/time picker
 // When the user taps it, a date picker is shown, followed by a time picker
 // The values selected are combined to create a date/time value, which is then
-// displayed in the EditText
+// displayed in the EditText, and passed to the change listener if one is set
 public class EditTextDateTimePicker implements View.OnClickListener,
         DatePickerDialog.OnDateSetListener,
         TimePickerDialog.OnTimeSetListener {
     private final Context mContext;
     private final EditText mEditText;
     private ZonedDateTime mDateTime;
+    private IDateTimeChangedListener mListener;
 
     EditTextDateTimePicker(Context context, EditText editText, ZoneId zoneId) {
         mContext = context;
@@ -58,6 +59,9 @@ public class EditTextDateTimePicker implements View.OnClickListener,
     public void onDateSet(DatePicker view, int year, int month, int dayOfMonth) {
         // Update the stored date/time with the new date
         mDateTime = mDateTime.withYear(year).withMonth(month).withDayOfMonth(dayOfMonth);
+        // Kept even if the time picker is cancelled
+        updateText();
+        notifyChanged();
 
         // Show a time picker
         TimePickerDialog dialog = new TimePickerDialog(mContext,
@@ -75,12 +79,23 @@ public class EditTextDateTimePicker implements View.OnClickListener,
         mDateTime = mDateTime.withHour(hourOfDay).withMinute(minute);
         // Update the text in the EditText
         updateText();
+        notifyChanged();
     }
 
     public ZonedDateTime getZonedDateTime() {
         return mDateTime;
     }
 
+    public void setOnDateTimeChangedListener(IDateTimeChangedListener listener) {
+        mListener = listener;
+    }
+
+    private void notifyChanged() {
+        if (mListener != null) {
+            mListener.onDateTimeChanged(mDateTime);
+        }
+    }
+
     private void updateText() {
         mEditText.setText(String.format("%s %s",
                 mDateTime.format(DateTimeFormatter.ofLocalizedDate(FormatStyle.MEDIUM)),
@@ -3,81 +3,85 @@
 
 package com.example.graphsample;
 
-import android.content.Context;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.ArrayAdapter;
 import android.widget.TextView;
 import androidx.annotation.NonNull;
-import com.microsoft.graph.models.DateTimeTimeZone;
-import com.microsoft.graph.models.Event;
-import java.time.LocalDateTime;
-import java.time.ZonedDateTime;
-import java.time.format.DateTimeFormatter;
-import java.time.format.FormatStyle;
-import java.util.List;
+import androidx.recyclerview.widget.AsyncDifferConfig;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
+import androidx.recyclerview.widget.RecyclerView;
 import java.util.Objects;
+import java.util.concurrent.Executor;
 
-public class EventListAdapter extends ArrayAdapter<Event> {
-    private final Context mContext;
-    private final int mResource;
+// Binds rows prepared by EventDisplayRow, no formatting
+// is done while scrolling
+// Lists passed to submitList are compared with the current list
+// on a background thread, and only inserted, removed, moved and
+// changed rows are updated
+public class EventListAdapter extends ListAdapter<EventDisplayRow, EventListAdapter.ViewHolder> {
+    // Rows are the same event if their IDs match, and unchanged
+    // if Graph reports the same change key and they display the same text
+    private static final DiffUtil.ItemCallback<EventDisplayRow> DIFF_CALLBACK =
+            new DiffUtil.ItemCallback<EventDisplayRow>() {
+                @Override
+                public boolean areItemsTheSame(@NonNull EventDisplayRow oldRow,
+                                               @NonNull EventDisplayRow newRow) {
+                    return Objects.equals(oldRow.getId(), newRow.getId());
+                }
 
-    // Used for the ViewHolder pattern
-    // https://developer.android.com/training/improving-layouts/smooth-scrolling
-    static class ViewHolder {
-        TextView subject;
-        TextView organizer;
-        TextView start;
-        TextView end;
+                @Override
+                public boolean areContentsTheSame(@NonNull EventDisplayRow oldRow,
+                                                  @NonNull EventDisplayRow newRow) {
+                    // The displayed text is compared too, as rows without a
+                    // change key, or formatted for another time zone or
+                    // locale, change without Graph reporting a new key
+                    return Objects.equals(oldRow.getChangeKey(), newRow.getChangeKey()) &&
+                            Objects.equals(oldRow.getSubject(), newRow.getSubject()) &&
+                            Objects.equals(oldRow.getOrganizer(), newRow.getOrganizer()) &&
+                            Objects.equals(oldRow.getStart(), newRow.getStart()) &&
+                            Objects.equals(oldRow.getEnd(), newRow.getEnd());
+                }
+            };
+
+    static class ViewHolder extends RecyclerView.ViewHolder {
+        final TextView subject;
+        final TextView organizer;
+        final TextView start;
+        final TextView end;
+
+        ViewHolder(@NonNull View itemView) {
+            super(itemView);
+            subject = itemView.findViewById(R.id.eventsubject);
+            organizer = itemView.findViewById(R.id.eventorganizer);
+            start = itemView.findViewById(R.id.eventstart);
+            end = itemView.findViewById(R.id.eventend);
+        }
     }
 
-    public EventListAdapter(Context context, int resource, List<Event> events) {
-        super(context, resource, events);
-        mContext = context;
-        mResource = resource;
+    // diffExecutor runs the list comparisons
+    public EventListAdapter(@NonNull Executor diffExecutor) {
+        super(new AsyncDifferConfig.Builder<>(DIFF_CALLBACK)
+                .setBackgroundThreadExecutor(diffExecutor)
+                .build());
     }
 
     @NonNull
     @Override
-    public View getView(int position, View convertView, ViewGroup parent) {
-        Event event = getItem(position);
-
-        ViewHolder holder;
-
-        if (convertView == null) {
-            LayoutInflater inflater = LayoutInflater.from(mContext);
-            convertView = inflater.inflate(mResource, parent, false);
-
-            holder = new ViewHolder();
-            holder.subject = convertView.findViewById(R.id.eventsubject);
-            holder.organizer = convertView.findViewById(R.id.eventorganizer);
-            holder.start = convertView.findViewById(R.id.eventstart);
-            holder.end = convertView.findViewById(R.id.eventend);
-
-            convertView.setTag(holder);
-        } else {
-            holder = (ViewHolder) convertView.getTag();
-        }
-
-        holder.subject.setText(event.subject);
-        Objects.requireNonNull(event.organizer);
-        holder.organizer.setText(Objects.requireNonNull(event.organizer.emailAddress).name);
-        holder.start.setText(getLocalDateTimeString(Objects.requireNonNull(event.start)));
-        holder.end.setText(getLocalDateTimeString(Objects.requireNonNull(event.end)));
-
-        return convertView;
+    public ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        View view = LayoutInflater.from(parent.getContext())
+                .inflate(R.layout.event_list_item, parent, false);
+        return new ViewHolder(view);
     }
 
-    // Convert Graph's DateTimeTimeZone format to
-    // a LocalDateTime, then return a formatted string
-    @NonNull
-    private String getLocalDateTimeString(@NonNull DateTimeTimeZone dateTime) {
-        ZonedDateTime localDateTime = LocalDateTime.parse(dateTime.dateTime)
-                .atZone(GraphToIana.getZoneIdFromWindows(dateTime.timeZone));
+    @Override
+    public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
+        EventDisplayRow row = getItem(position);
 
-        return String.format("%s %s",
-                localDateTime.format(DateTimeFormatter.ofLocalizedDate(FormatStyle.MEDIUM)),
-                localDateTime.format(DateTimeFormatter.ofLocalizedTime(FormatStyle.SHORT)));
+        holder.subject.setText(row.getSubject());
+        holder.organizer.setText(row.getOrganizer());
+        holder.start.setText(row.getStart());
+        holder.end.setText(row.getEnd());
     }
 }
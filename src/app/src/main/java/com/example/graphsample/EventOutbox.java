@@ -0,0 +1,272 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT License.
+
+package com.example.graphsample;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.microsoft.graph.logger.DefaultLogger;
+import com.microsoft.graph.models.Event;
+import com.microsoft.graph.serializer.DefaultSerializer;
+import com.microsoft.graph.serializer.ISerializer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+// Singleton class - persistent queue of events waiting to be created
+// while the device is offline
+// Items are kept per signed-in user in the order they were added, and
+// GraphHelper sends them in that order once connectivity returns. Each
+// event is given a transactionId when it is added, which Graph uses to
+// recognize a create it has already done, so sending an item again
+// after a lost response doesn't create a duplicate
+// An item Graph fails to create MAX_ATTEMPTS times, or rejects outright,
+// is parked: it stays in the database with its last error, but is no
+// longer sent or counted as pending, so it can't hold up the items
+// queued after it
+public class EventOutbox extends SQLiteOpenHelper {
+    public static final int MAX_ATTEMPTS = 5;
+
+    private static final String DATABASE_NAME = "outbox.db";
+    private static final int DATABASE_VERSION = 1;
+
+    private static final String TABLE_ITEMS = "items";
+    private static final String COLUMN_SEQUENCE = "sequence";
+    private static final String COLUMN_USER_ID = "user_id";
+    private static final String COLUMN_TRANSACTION_ID = "transaction_id";
+    private static final String COLUMN_PAYLOAD = "payload";
+    private static final String COLUMN_CREATED = "created";
+    private static final String COLUMN_ATTEMPTS = "attempts";
+    private static final String COLUMN_LAST_ERROR = "last_error";
+
+    private static final String PENDING_SELECTION =
+            COLUMN_USER_ID + " = ? AND " + COLUMN_ATTEMPTS + " < " + MAX_ATTEMPTS;
+
+    private static EventOutbox INSTANCE = null;
+    private final ISerializer mSerializer;
+
+    // An event waiting to be created
+    public static final class Item {
+        private final long mSequence;
+        private final String mTransactionId;
+        private final Event mEvent;
+        private final int mAttempts;
+
+        Item(long sequence, @NonNull String transactionId, @NonNull Event event, int attempts) {
+            mSequence = sequence;
+            mTransactionId = transactionId;
+            mEvent = event;
+            mAttempts = attempts;
+        }
+
+        public long getSequence() {
+            return mSequence;
+        }
+
+        @NonNull
+        public String getTransactionId() {
+            return mTransactionId;
+        }
+
+        // The event to post, including its transactionId
+        @NonNull
+        public Event getEvent() {
+            return mEvent;
+        }
+
+        // Number of times sending the item has failed
+        public int getAttempts() {
+            return mAttempts;
+        }
+    }
+
+    private EventOutbox(Context ctx) {
+        super(ctx, DATABASE_NAME, null, DATABASE_VERSION);
+        mSerializer = new DefaultSerializer(new DefaultLogger());
+    }
+
+    public static synchronized EventOutbox getInstance(Context ctx) {
+        if (INSTANCE == null) {
+            INSTANCE = new EventOutbox(ctx.getApplicationContext());
+        }
+
+        return INSTANCE;
+    }
+
+    // Version called from GraphHelper. Does not create an
+    // instance if one doesn't exist
+    public static synchronized EventOutbox getInstance() {
+        if (INSTANCE == null) {
+            throw new IllegalStateException(
+                    "EventOutbox has not been initialized from MainActivity");
+        }
+
+        return INSTANCE;
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_ITEMS + " (" +
+                COLUMN_SEQUENCE + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                COLUMN_USER_ID + " TEXT NOT NULL, " +
+                COLUMN_TRANSACTION_ID + " TEXT NOT NULL UNIQUE, " +
+                COLUMN_PAYLOAD + " TEXT NOT NULL, " +
+                COLUMN_CREATED + " INTEGER NOT NULL, " +
+                COLUMN_ATTEMPTS + " INTEGER NOT NULL DEFAULT 0, " +
+                COLUMN_LAST_ERROR + " TEXT)");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        // No upgrades yet. Unlike the event store, the outbox holds
+        // data that only exists on the device, so later versions
+        // must migrate it instead of recreating the table
+    }
+
+    // Gives the event a transactionId if it doesn't have one,
+    // then adds it to the end of the user's queue
+    // Returns null if the event couldn't be stored
+    // Performs disk I/O - do not call from the main thread
+    @Nullable
+    public Item add(@NonNull String userId, @NonNull Event event) {
+        if (event.transactionId == null) {
+            event.transactionId = UUID.randomUUID().toString();
+        }
+
+        ContentValues values = new ContentValues();
+        values.put(COLUMN_USER_ID, userId);
+        values.put(COLUMN_TRANSACTION_ID, event.transactionId);
+        values.put(COLUMN_PAYLOAD, mSerializer.serializeObject(event));
+        values.put(COLUMN_CREATED, System.currentTimeMillis());
+
+        try {
+            // An event that is already queued keeps its place
+            SQLiteDatabase db = getWritableDatabase();
+            long sequence = db.insertWithOnConflict(TABLE_ITEMS, null, values,
+                    SQLiteDatabase.CONFLICT_IGNORE);
+            if (sequence == -1) {
+                try (Cursor cursor = db.query(TABLE_ITEMS, new String[] { COLUMN_SEQUENCE },
+                        COLUMN_TRANSACTION_ID + " = ?", new String[] { event.transactionId },
+                        null, null, null)) {
+                    if (!cursor.moveToFirst()) {
+                        Log.e("EVENT_OUTBOX", "Event was neither added nor already queued");
+                        return null;
+                    }
+                    sequence = cursor.getLong(0);
+                }
+            }
+
+            return new Item(sequence, event.transactionId, event, 0);
+        } catch (SQLException exception) {
+            Log.e("EVENT_OUTBOX", "Error adding outbox item", exception);
+            return null;
+        }
+    }
+
+    // Returns up to limit of the user's oldest items that aren't
+    // parked, oldest first
+    // Performs disk I/O - do not call from the main thread
+    @NonNull
+    public List<Item> getPending(@NonNull String userId, int limit) {
+        List<Item> items = new ArrayList<>();
+        try (Cursor cursor = getReadableDatabase().query(TABLE_ITEMS,
+                new String[] { COLUMN_SEQUENCE, COLUMN_TRANSACTION_ID, COLUMN_PAYLOAD,
+                        COLUMN_ATTEMPTS },
+                PENDING_SELECTION, new String[] { userId },
+                null, null, COLUMN_SEQUENCE, String.valueOf(limit))) {
+            while (cursor.moveToNext()) {
+                Event event = mSerializer.deserializeObject(cursor.getString(2), Event.class);
+                if (event != null) {
+                    items.add(new Item(cursor.getLong(0), cursor.getString(1), event,
+                            cursor.getInt(3)));
+                }
+            }
+        } catch (SQLException exception) {
+            Log.e("EVENT_OUTBOX", "Error reading outbox", exception);
+        }
+
+        return items;
+    }
+
+    // Number of items queued for the user, not counting parked ones
+    // Performs disk I/O - do not call from the main thread
+    public long getPendingCount(@NonNull String userId) {
+        return count(PENDING_SELECTION, userId);
+    }
+
+    // Number of the user's items that were parked after failing
+    // Performs disk I/O - do not call from the main thread
+    public long getParkedCount(@NonNull String userId) {
+        return count(COLUMN_USER_ID + " = ? AND " + COLUMN_ATTEMPTS + " >= " + MAX_ATTEMPTS,
+                userId);
+    }
+
+    // Removes an item once it has been created
+    // Performs disk I/O - do not call from the main thread
+    public void remove(long sequence) {
+        try {
+            getWritableDatabase().delete(TABLE_ITEMS, COLUMN_SEQUENCE + " = ?",
+                    new String[] { String.valueOf(sequence) });
+        } catch (SQLException exception) {
+            Log.e("EVENT_OUTBOX", "Error removing outbox item", exception);
+        }
+    }
+
+    // Keeps the item for the next attempt, recording why this one failed
+    // Performs disk I/O - do not call from the main thread
+    public void recordFailure(long sequence, @NonNull String error) {
+        try {
+            getWritableDatabase().execSQL("UPDATE " + TABLE_ITEMS + " SET " +
+                            COLUMN_ATTEMPTS + " = " + COLUMN_ATTEMPTS + " + 1, " +
+                            COLUMN_LAST_ERROR + " = ? WHERE " + COLUMN_SEQUENCE + " = ?",
+                    new Object[] { error, sequence });
+        } catch (SQLException exception) {
+            Log.e("EVENT_OUTBOX", "Error updating outbox item", exception);
+        }
+    }
+
+    // Stops sending an item Graph rejected, keeping it with the error
+    // Performs disk I/O - do not call from the main thread
+    public void park(long sequence, @NonNull String error) {
+        try {
+            getWritableDatabase().execSQL("UPDATE " + TABLE_ITEMS + " SET " +
+                            COLUMN_ATTEMPTS + " = MAX(" + COLUMN_ATTEMPTS + ", " +
+                            MAX_ATTEMPTS + "), " +
+                            COLUMN_LAST_ERROR + " = ? WHERE " + COLUMN_SEQUENCE + " = ?",
+                    new Object[] { error, sequence });
+        } catch (SQLException exception) {
+            Log.e("EVENT_OUTBOX", "Error parking outbox item", exception);
+        }
+    }
+
+    private long count(String selection, String userId) {
+        try {
+            return DatabaseUtils.queryNumEntries(getReadableDatabase(), TABLE_ITEMS,
+                    selection, new String[] { userId });
+        } catch (SQLException exception) {
+            Log.e("EVENT_OUTBOX", "Error counting outbox items", exception);
+            return 0;
+        }
+    }
+
+    // Removes every queued item, for example on sign out
+    // Performs disk I/O - do not call from the main thread
+    public void clear() {
+        try {
+            getWritableDatabase().delete(TABLE_ITEMS, null, null);
+        } catch (SQLException exception) {
+            Log.e("EVENT_OUTBOX", "Error clearing outbox", exception);
+        }
+    }
+}
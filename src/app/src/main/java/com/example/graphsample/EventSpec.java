@@ -0,0 +1,32 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT License.
+
+package com.example.graphsample;
+
+import androidx.annotation.NonNull;
+
+import java.time.ZonedDateTime;
+
+// The values needed to create an event, used for bulk creation
+public class EventSpec {
+    public final String subject;
+    public final ZonedDateTime start;
+    public final ZonedDateTime end;
+    public final String timeZone;
+    public final String[] attendees;
+    public final String body;
+
+    public EventSpec(String subject,
+                     @NonNull ZonedDateTime start,
+                     @NonNull ZonedDateTime end,
+                     String timeZone,
+                     @NonNull String[] attendees,
+                     String body) {
+        this.subject = subject;
+        this.start = start;
+        this.end = end;
+        this.timeZone = timeZone;
+        this.attendees = attendees;
+        this.body = body;
+    }
+}
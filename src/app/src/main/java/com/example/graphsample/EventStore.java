@@ -0,0 +1,272 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT License.
+
+package com.example.graphsample;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.microsoft.graph.logger.DefaultLogger;
+import com.microsoft.graph.models.Event;
+import com.microsoft.graph.serializer.DefaultSerializer;
+import com.microsoft.graph.serializer.ISerializer;
+
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+// Singleton class - persists the events returned by calendar view
+// requests so the calendar can render from local storage while
+// the network request is still in flight
+// Each set of events is keyed by the signed-in user and the
+// time window (start, end, and time zone) it was requested for,
+// along with the delta link used to incrementally sync that window
+public class EventStore extends SQLiteOpenHelper {
+    private static final String DATABASE_NAME = "events.db";
+    private static final int DATABASE_VERSION = 2;
+
+    private static final String TABLE_WINDOWS = "windows";
+    private static final String TABLE_EVENTS = "events";
+    private static final String COLUMN_USER_ID = "user_id";
+    private static final String COLUMN_WINDOW_KEY = "window_key";
+    private static final String COLUMN_UPDATED = "updated";
+    private static final String COLUMN_DELTA_LINK = "delta_link";
+    private static final String COLUMN_EVENT_ID = "event_id";
+    private static final String COLUMN_START = "start";
+    private static final String COLUMN_PAYLOAD = "payload";
+
+    private static EventStore INSTANCE = null;
+    private final ISerializer mSerializer;
+
+    private EventStore(Context ctx) {
+        super(ctx, DATABASE_NAME, null, DATABASE_VERSION);
+        mSerializer = new DefaultSerializer(new DefaultLogger());
+    }
+
+    public static synchronized EventStore getInstance(Context ctx) {
+        if (INSTANCE == null) {
+            INSTANCE = new EventStore(ctx.getApplicationContext());
+        }
+
+        return INSTANCE;
+    }
+
+    // Version called from GraphHelper. Does not create an
+    // instance if one doesn't exist
+    public static synchronized EventStore getInstance() {
+        if (INSTANCE == null) {
+            throw new IllegalStateException(
+                    "EventStore has not been initialized from MainActivity");
+        }
+
+        return INSTANCE;
+    }
+
+    // Builds the key used to identify a calendar view window
+    @NonNull
+    public static String getWindowKey(@NonNull ZonedDateTime viewStart,
+                                      @NonNull ZonedDateTime viewEnd,
+                                      String timeZone) {
+        return viewStart.format(DateTimeFormatter.ISO_OFFSET_DATE_TIME) + "|" +
+                viewEnd.format(DateTimeFormatter.ISO_OFFSET_DATE_TIME) + "|" +
+                timeZone;
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_WINDOWS + " (" +
+                COLUMN_USER_ID + " TEXT NOT NULL, " +
+                COLUMN_WINDOW_KEY + " TEXT NOT NULL, " +
+                COLUMN_UPDATED + " INTEGER NOT NULL, " +
+                COLUMN_DELTA_LINK + " TEXT, " +
+                "PRIMARY KEY (" + COLUMN_USER_ID + ", " + COLUMN_WINDOW_KEY + "))");
+
+        db.execSQL("CREATE TABLE " + TABLE_EVENTS + " (" +
+                COLUMN_USER_ID + " TEXT NOT NULL, " +
+                COLUMN_WINDOW_KEY + " TEXT NOT NULL, " +
+                COLUMN_EVENT_ID + " TEXT NOT NULL, " +
+                COLUMN_START + " TEXT, " +
+                COLUMN_PAYLOAD + " TEXT NOT NULL, " +
+                "PRIMARY KEY (" + COLUMN_USER_ID + ", " + COLUMN_WINDOW_KEY + ", " +
+                COLUMN_EVENT_ID + "))");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        // The store only holds data that can be downloaded again,
+        // so it is simply recreated
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_EVENTS);
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_WINDOWS);
+        onCreate(db);
+    }
+
+    // Returns the stored events for the window, or null if
+    // the window has never been stored for this user
+    // Performs disk I/O - do not call from the main thread
+    @Nullable
+    public List<Event> getEvents(@NonNull String userId, @NonNull String windowKey) {
+        try {
+            SQLiteDatabase db = getReadableDatabase();
+            String[] selectionArgs = { userId, windowKey };
+            String selection = COLUMN_USER_ID + " = ? AND " + COLUMN_WINDOW_KEY + " = ?";
+
+            try (Cursor windowCursor = db.query(TABLE_WINDOWS, new String[] { COLUMN_UPDATED },
+                    selection, selectionArgs, null, null, null)) {
+                if (!windowCursor.moveToFirst()) {
+                    return null;
+                }
+            }
+
+            List<Event> events = new ArrayList<>();
+            try (Cursor cursor = db.query(TABLE_EVENTS, new String[] { COLUMN_PAYLOAD },
+                    selection, selectionArgs, null, null, COLUMN_START)) {
+                while (cursor.moveToNext()) {
+                    Event event = mSerializer.deserializeObject(cursor.getString(0), Event.class);
+                    if (event != null) {
+                        events.add(event);
+                    }
+                }
+            }
+
+            return events;
+        } catch (SQLException exception) {
+            Log.e("EVENT_STORE", "Error reading stored events", exception);
+            return null;
+        }
+    }
+
+    // Returns every event stored for the user, once each, in no
+    // particular order, for example to build the search index
+    // Performs disk I/O - do not call from the main thread
+    @NonNull
+    public List<Event> getAllEvents(@NonNull String userId) {
+        List<Event> events = new ArrayList<>();
+        try (Cursor cursor = getReadableDatabase().query(TABLE_EVENTS,
+                new String[] { COLUMN_PAYLOAD },
+                COLUMN_USER_ID + " = ?", new String[] { userId },
+                COLUMN_EVENT_ID, null, null)) {
+            while (cursor.moveToNext()) {
+                Event event = mSerializer.deserializeObject(cursor.getString(0), Event.class);
+                if (event != null) {
+                    events.add(event);
+                }
+            }
+        } catch (SQLException exception) {
+            Log.e("EVENT_STORE", "Error reading stored events", exception);
+        }
+
+        return events;
+    }
+
+    // Replaces the stored events for the window
+    // Any delta link stored for the window is discarded
+    // Performs disk I/O - do not call from the main thread
+    public void putEvents(@NonNull String userId, @NonNull String windowKey,
+                          @NonNull List<Event> events) {
+        applyChanges(userId, windowKey, events, true, null);
+    }
+
+    // Returns the delta link stored for the window, or null if
+    // the window has not been synced with calendarView/delta
+    // Performs disk I/O - do not call from the main thread
+    @Nullable
+    public String getDeltaLink(@NonNull String userId, @NonNull String windowKey) {
+        try (Cursor cursor = getReadableDatabase().query(TABLE_WINDOWS,
+                new String[] { COLUMN_DELTA_LINK },
+                COLUMN_USER_ID + " = ? AND " + COLUMN_WINDOW_KEY + " = ?",
+                new String[] { userId, windowKey }, null, null, null)) {
+            return cursor.moveToFirst() ? cursor.getString(0) : null;
+        } catch (SQLException exception) {
+            Log.e("EVENT_STORE", "Error reading delta link", exception);
+            return null;
+        }
+    }
+
+    // Applies a set of changes returned by calendarView/delta to the window
+    // Events marked as removed are deleted, all others are added or replaced.
+    // If replace is true, the window is cleared before applying the changes
+    // Performs disk I/O - do not call from the main thread
+    public void applyChanges(@NonNull String userId, @NonNull String windowKey,
+                             @NonNull List<Event> changes, boolean replace,
+                             @Nullable String deltaLink) {
+        try {
+            SQLiteDatabase db = getWritableDatabase();
+            String where = COLUMN_USER_ID + " = ? AND " + COLUMN_WINDOW_KEY + " = ?";
+
+            db.beginTransaction();
+            try {
+                if (replace) {
+                    db.delete(TABLE_EVENTS, where, new String[] { userId, windowKey });
+                }
+
+                for (Event event : changes) {
+                    if (event.id == null) {
+                        continue;
+                    }
+
+                    if (isRemoved(event)) {
+                        db.delete(TABLE_EVENTS, where + " AND " + COLUMN_EVENT_ID + " = ?",
+                                new String[] { userId, windowKey, event.id });
+                        continue;
+                    }
+
+                    ContentValues values = new ContentValues();
+                    values.put(COLUMN_USER_ID, userId);
+                    values.put(COLUMN_WINDOW_KEY, windowKey);
+                    values.put(COLUMN_EVENT_ID, event.id);
+                    values.put(COLUMN_START, event.start == null ? null : event.start.dateTime);
+                    values.put(COLUMN_PAYLOAD, mSerializer.serializeObject(event));
+                    db.insertWithOnConflict(TABLE_EVENTS, null, values,
+                            SQLiteDatabase.CONFLICT_REPLACE);
+                }
+
+                ContentValues window = new ContentValues();
+                window.put(COLUMN_USER_ID, userId);
+                window.put(COLUMN_WINDOW_KEY, windowKey);
+                window.put(COLUMN_UPDATED, System.currentTimeMillis());
+                window.put(COLUMN_DELTA_LINK, deltaLink);
+                db.insertWithOnConflict(TABLE_WINDOWS, null, window,
+                        SQLiteDatabase.CONFLICT_REPLACE);
+
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+        } catch (SQLException exception) {
+            Log.e("EVENT_STORE", "Error storing events", exception);
+        }
+    }
+
+    // Deleted events are returned by calendarView/delta
+    // with an @removed annotation
+    public static boolean isRemoved(@NonNull Event event) {
+        return event.additionalDataManager().containsKey("@removed");
+    }
+
+    // Removes all stored events, used on sign out
+    // Performs disk I/O - do not call from the main thread
+    public void clear() {
+        try {
+            SQLiteDatabase db = getWritableDatabase();
+            db.beginTransaction();
+            try {
+                db.delete(TABLE_EVENTS, null, null);
+                db.delete(TABLE_WINDOWS, null, null);
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+        } catch (SQLException exception) {
+            Log.e("EVENT_STORE", "Error clearing stored events", exception);
+        }
+    }
+}
@@ -0,0 +1,362 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT License.
+
+package com.example.graphsample;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.microsoft.graph.content.BatchRequestContent;
+import com.microsoft.graph.content.BatchResponseStep;
+import com.microsoft.graph.http.HttpMethod;
+import com.microsoft.graph.http.IHttpRequest;
+import com.microsoft.graph.requests.GraphServiceClient;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.Request;
+
+// Collects Graph requests and sends them as JSON batches
+// (POST /$batch) instead of one HTTP round trip per request
+// Each request added gets its own future, which is resolved from
+// the matching response in the batch
+// Requests are split into batches of up to 20, the limit
+// imposed by Graph
+// Graph throttles the requests inside a batch one by one, so requests
+// answered with 429 or 503 are sent again in a new batch once their
+// Retry-After has passed, along with requests that failed only because
+// they depend on them, within ThrottlingCallFactory's retry budget
+public class GraphBatch {
+    public static final int MAX_BATCH_SIZE = 20;
+
+    private final GraphServiceClient<Request> mClient;
+    private final ThrottlingCallFactory mThrottling;
+    private final ScheduledExecutorService mScheduler;
+    private final List<Step<?>> mSteps = new ArrayList<>();
+    private final Map<CompletableFuture<?>, Step<?>> mStepsByFuture = new IdentityHashMap<>();
+    private boolean mExecuted = false;
+
+    private static class Step<T> {
+        final IHttpRequest request;
+        final HttpMethod method;
+        final Object body;
+        final Class<T> responseType;
+        final List<Step<?>> dependsOn = new ArrayList<>();
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        int chunk;
+
+        Step(IHttpRequest request, HttpMethod method, Object body, Class<T> responseType) {
+            this.request = request;
+            this.method = method;
+            this.body = body;
+            this.responseType = responseType;
+        }
+    }
+
+    GraphBatch(@NonNull GraphServiceClient<Request> client,
+               @NonNull ThrottlingCallFactory throttling,
+               @NonNull ScheduledExecutorService scheduler) {
+        mClient = client;
+        mThrottling = throttling;
+        mScheduler = scheduler;
+    }
+
+    // Adds a GET request to the batch
+    public synchronized <T> CompletableFuture<T> add(@NonNull IHttpRequest request,
+                                                     @NonNull Class<T> responseType) {
+        return add(request, HttpMethod.GET, null, responseType);
+    }
+
+    // Adds a request to the batch. The request will only be sent by Graph
+    // once the requests behind the futures in dependsOn have completed.
+    // Use Void.class as the response type for requests without a body
+    public synchronized <T> CompletableFuture<T> add(@NonNull IHttpRequest request,
+                                                     @NonNull HttpMethod method,
+                                                     @Nullable Object body,
+                                                     @NonNull Class<T> responseType,
+                                                     CompletableFuture<?>... dependsOn) {
+        if (mExecuted) {
+            throw new IllegalStateException("Requests cannot be added after the batch is executed");
+        }
+
+        Step<T> step = new Step<>(request, method, body, responseType);
+        for (CompletableFuture<?> dependency : dependsOn) {
+            Step<?> dependencyStep = mStepsByFuture.get(dependency);
+            if (dependencyStep == null) {
+                throw new IllegalArgumentException("Dependencies must be futures from this batch");
+            }
+            step.dependsOn.add(dependencyStep);
+        }
+
+        step.chunk = mSteps.size() / MAX_BATCH_SIZE;
+        mSteps.add(step);
+        mStepsByFuture.put(step.future, step);
+        return step.future;
+    }
+
+    public synchronized int size() {
+        return mSteps.size();
+    }
+
+    // Sends every batch one after the other
+    public CompletableFuture<Void> execute() {
+        return execute(1);
+    }
+
+    // Sends the batches with at most maxConcurrentBatches in flight
+    // A batch that depends on a request in an earlier batch waits for
+    // that batch to finish. The returned future completes when every
+    // request's future has been resolved
+    public CompletableFuture<Void> execute(int maxConcurrentBatches) {
+        final List<List<Step<?>>> chunks = new ArrayList<>();
+        synchronized (this) {
+            if (mExecuted) {
+                throw new IllegalStateException("The batch has already been executed");
+            }
+            mExecuted = true;
+
+            for (Step<?> step : mSteps) {
+                if (step.chunk == chunks.size()) {
+                    chunks.add(new ArrayList<>());
+                }
+                chunks.get(step.chunk).add(step);
+            }
+        }
+
+        if (chunks.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        final List<CompletableFuture<Void>> chunksDone = new ArrayList<>(chunks.size());
+        for (int i = 0; i < chunks.size(); i++) {
+            chunksDone.add(new CompletableFuture<>());
+        }
+
+        final AtomicInteger nextChunk = new AtomicInteger();
+        int lanes = Math.max(1, Math.min(maxConcurrentBatches, chunks.size()));
+        for (int i = 0; i < lanes; i++) {
+            runNextChunk(chunks, chunksDone, nextChunk);
+        }
+
+        return CompletableFuture.allOf(chunksDone.toArray(new CompletableFuture[0]));
+    }
+
+    private void runNextChunk(List<List<Step<?>>> chunks,
+                              List<CompletableFuture<Void>> chunksDone,
+                              AtomicInteger nextChunk) {
+        final int index = nextChunk.getAndIncrement();
+        if (index >= chunks.size()) {
+            return;
+        }
+
+        final List<Step<?>> chunk = chunks.get(index);
+
+        // Wait for earlier batches this one depends on
+        Set<Integer> dependencyChunks = new LinkedHashSet<>();
+        for (Step<?> step : chunk) {
+            for (Step<?> dependency : step.dependsOn) {
+                if (dependency.chunk != index) {
+                    dependencyChunks.add(dependency.chunk);
+                }
+            }
+        }
+
+        List<CompletableFuture<Void>> dependencies = new ArrayList<>();
+        for (int dependencyChunk : dependencyChunks) {
+            dependencies.add(chunksDone.get(dependencyChunk));
+        }
+
+        CompletableFuture.allOf(dependencies.toArray(new CompletableFuture[0]))
+                .thenCompose(unused -> sendSteps(chunk, 0, 0))
+                .whenComplete((unused, exception) -> {
+                    // Steps can be left unresolved if building or sending the
+                    // batch threw, callers waiting on them must not hang
+                    failSteps(chunk, exception);
+                    chunksDone.get(index).complete(null);
+                    runNextChunk(chunks, chunksDone, nextChunk);
+                });
+    }
+
+    // Completes the steps that haven't been resolved with the
+    // exception, or an IllegalStateException if there isn't one
+    private static void failSteps(List<Step<?>> steps, @Nullable Throwable exception) {
+        Throwable cause = exception instanceof CompletionException
+                ? exception.getCause() : exception;
+        for (Step<?> step : steps) {
+            if (!step.future.isDone()) {
+                step.future.completeExceptionally(cause != null ? cause
+                        : new IllegalStateException("The batch ended without resolving the request"));
+            }
+        }
+    }
+
+    // Sends the steps of a chunk, then sends the throttled ones again
+    // after their delay, until each step's future is resolved
+    private CompletableFuture<Void> sendSteps(List<Step<?>> steps, final int attempt,
+                                              final long waitedMillis) {
+        final BatchRequestContent content = new BatchRequestContent();
+        final Map<Step<?>, String> stepIds = new IdentityHashMap<>();
+        final List<Step<?>> sentSteps = new ArrayList<>();
+
+        for (Step<?> step : steps) {
+            List<String> dependsOnIds = new ArrayList<>();
+            boolean dependencyFailed = false;
+
+            for (Step<?> dependency : step.dependsOn) {
+                String dependencyId = stepIds.get(dependency);
+                if (dependencyId != null) {
+                    dependsOnIds.add(dependencyId);
+                } else if (!dependency.future.isDone() ||
+                        dependency.future.isCompletedExceptionally()) {
+                    // Dependencies outside this batch have already completed,
+                    // mirror Graph's behavior for failed dependencies
+                    dependencyFailed = true;
+                }
+            }
+
+            if (dependencyFailed) {
+                step.future.completeExceptionally(
+                        new BatchStepException(424, "A request this request depends on failed"));
+                continue;
+            }
+
+            String id = content.addBatchRequestStep(step.request, step.method, step.body,
+                    dependsOnIds.toArray(new String[0]));
+            stepIds.put(step, id);
+            sentSteps.add(step);
+        }
+
+        if (sentSteps.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        return mClient.batch().buildRequest()
+                .postAsync(content)
+                .handle((response, exception) -> {
+                    List<Step<?>> retrySteps = new ArrayList<>();
+                    long delay = 0;
+                    for (Step<?> step : sentSteps) {
+                        if (exception != null) {
+                            step.future.completeExceptionally(exception instanceof CompletionException
+                                    ? exception.getCause() : exception);
+                            continue;
+                        }
+
+                        BatchResponseStep<JsonElement> responseStep =
+                                response.getResponseById(stepIds.get(step));
+                        long stepDelay = getRetryDelay(step, responseStep, retrySteps,
+                                attempt, waitedMillis);
+                        if (stepDelay >= 0) {
+                            retrySteps.add(step);
+                            delay = Math.max(delay, stepDelay);
+                        } else {
+                            resolveStep(step, responseStep);
+                        }
+                    }
+
+                    if (retrySteps.isEmpty()) {
+                        return CompletableFuture.<Void>completedFuture(null);
+                    }
+
+                    CompletableFuture<Void> retried = new CompletableFuture<>();
+                    final long retryWaitedMillis = waitedMillis + delay;
+                    mScheduler.schedule(() -> {
+                        try {
+                            sendSteps(retrySteps, attempt + 1, retryWaitedMillis)
+                                    .whenComplete((unused, retryException) -> {
+                                        failSteps(retrySteps, retryException);
+                                        retried.complete(null);
+                                    });
+                        } catch (RuntimeException retryException) {
+                            failSteps(retrySteps, retryException);
+                            retried.complete(null);
+                        }
+                    }, delay, TimeUnit.MILLISECONDS);
+                    return retried;
+                })
+                .thenCompose(retried -> retried);
+    }
+
+    // How long to wait before sending the step again, or -1 to resolve
+    // it with this response. Steps that failed because a step they
+    // depend on was throttled are sent again with it
+    private long getRetryDelay(Step<?> step, @Nullable BatchResponseStep<JsonElement> responseStep,
+                               List<Step<?>> retrySteps, int attempt, long waitedMillis) {
+        if (responseStep == null) {
+            return -1;
+        }
+
+        if (responseStep.status == 424) {
+            for (Step<?> dependency : step.dependsOn) {
+                if (retrySteps.contains(dependency)) {
+                    return 0;
+                }
+            }
+            return -1;
+        }
+
+        return mThrottling.getStepRetryDelay(responseStep.status, step.method.name(),
+                getHeader(responseStep, "Retry-After"), attempt, waitedMillis);
+    }
+
+    // Header names in batch responses keep the case Graph sent them in
+    @Nullable
+    private static String getHeader(BatchResponseStep<JsonElement> responseStep, String name) {
+        if (responseStep.headers == null) {
+            return null;
+        }
+
+        for (Map.Entry<String, String> header : responseStep.headers.entrySet()) {
+            if (name.equalsIgnoreCase(header.getKey())) {
+                return header.getValue();
+            }
+        }
+        return null;
+    }
+
+    private static <T> void resolveStep(Step<T> step,
+                                        @Nullable BatchResponseStep<JsonElement> responseStep) {
+        if (responseStep == null) {
+            step.future.completeExceptionally(
+                    new BatchStepException(0, "No response was returned for the request"));
+        } else if (responseStep.status >= 400) {
+            step.future.completeExceptionally(new BatchStepException(responseStep.status,
+                    getErrorMessage(responseStep)));
+        } else if (responseStep.body == null || step.responseType == Void.class) {
+            step.future.complete(null);
+        } else {
+            try {
+                step.future.complete(responseStep.getDeserializedBody(step.responseType));
+            } catch (Exception exception) {
+                step.future.completeExceptionally(exception);
+            }
+        }
+    }
+
+    // Reads the message from a Graph error response body
+    private static String getErrorMessage(BatchResponseStep<JsonElement> responseStep) {
+        String message = "Request failed with status " + responseStep.status;
+        if (responseStep.body != null && responseStep.body.isJsonObject()) {
+            JsonObject body = responseStep.body.getAsJsonObject();
+            if (body.has("error") && body.get("error").isJsonObject()) {
+                JsonObject error = body.getAsJsonObject("error");
+                if (error.has("message")) {
+                    message += ": " + error.get("message").getAsString();
+                }
+            }
+        }
+        return message;
+    }
+}
@@ -0,0 +1,118 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT License.
+
+package com.example.graphsample;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// The thread pools used by GraphHelper and AuthenticationHelper
+// network - runs OkHttp calls, so Graph responses are received
+//     and deserialized by the SDK on these threads
+// parsing - local store reads and writes and other work on
+//     downloaded data
+// continuation - the future chains that tie requests together,
+//     such as requesting the next page
+// mainThread - hands results to the UI
+// scheduler - starts delayed work, such as retries of throttled
+//     requests, so nothing holds a thread while it waits
+// Keeping these separate means heavy parsing can't delay
+// requests, and all pools report their queue depth
+public class GraphExecutors {
+    private static GraphExecutors DEFAULT = null;
+
+    private final ThreadPoolExecutor mNetwork;
+    private final ThreadPoolExecutor mParsing;
+    private final ThreadPoolExecutor mContinuation;
+    private final Executor mMainThread;
+    private final ScheduledThreadPoolExecutor mScheduler;
+
+    public GraphExecutors(int networkThreads, int parsingThreads, int continuationThreads) {
+        mNetwork = createPool("GraphNetwork", networkThreads);
+        mParsing = createPool("GraphParsing", parsingThreads);
+        mContinuation = createPool("GraphContinuation", continuationThreads);
+
+        final Handler mainHandler = new Handler(Looper.getMainLooper());
+        mMainThread = mainHandler::post;
+
+        // Only hands work to other pools, so one thread is enough
+        mScheduler = new ScheduledThreadPoolExecutor(1, createThreadFactory("GraphScheduler"));
+        mScheduler.setRemoveOnCancelPolicy(true);
+    }
+
+    // Sized for OkHttp's default limit of 5 concurrent requests per host
+    public static synchronized GraphExecutors getDefault() {
+        if (DEFAULT == null) {
+            DEFAULT = new GraphExecutors(5, 2, 2);
+        }
+
+        return DEFAULT;
+    }
+
+    @NonNull
+    public ThreadPoolExecutor network() {
+        return mNetwork;
+    }
+
+    @NonNull
+    public ThreadPoolExecutor parsing() {
+        return mParsing;
+    }
+
+    @NonNull
+    public ThreadPoolExecutor continuation() {
+        return mContinuation;
+    }
+
+    @NonNull
+    public Executor mainThread() {
+        return mMainThread;
+    }
+
+    @NonNull
+    public ScheduledExecutorService scheduler() {
+        return mScheduler;
+    }
+
+    // Tasks waiting for a thread in each pool
+    public int getNetworkQueueDepth() {
+        return mNetwork.getQueue().size();
+    }
+
+    public int getParsingQueueDepth() {
+        return mParsing.getQueue().size();
+    }
+
+    public int getContinuationQueueDepth() {
+        return mContinuation.getQueue().size();
+    }
+
+    // Fixed-size pool whose idle threads exit, with an unbounded queue
+    // so submitted work is never rejected
+    private static ThreadPoolExecutor createPool(String name, int threads) {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads,
+                30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), createThreadFactory(name));
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    private static ThreadFactory createThreadFactory(final String name) {
+        final AtomicInteger threadCount = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
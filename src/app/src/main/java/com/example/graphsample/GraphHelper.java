@@ -3,8 +3,15 @@
 
 package com.example.graphsample;
 
+import android.util.Log;
+
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
+import com.microsoft.graph.http.CustomRequest;
+import com.microsoft.graph.http.GraphServiceException;
+import com.microsoft.graph.http.HttpMethod;
+import com.microsoft.graph.http.IHttpRequest;
 import com.microsoft.graph.models.Attendee;
 import com.microsoft.graph.models.AttendeeType;
 import com.microsoft.graph.models.BodyType;
@@ -12,54 +19,543 @@ import com.microsoft.graph.models.DateTimeTimeZone;
 import com.microsoft.graph.models.EmailAddress;
 import com.microsoft.graph.models.Event;
 import com.microsoft.graph.models.ItemBody;
+import com.microsoft.graph.models.MailboxSettings;
 import com.microsoft.graph.models.User;
 import com.microsoft.graph.options.HeaderOption;
 import com.microsoft.graph.options.Option;
 import com.microsoft.graph.options.QueryOption;
 import com.microsoft.graph.requests.EventCollectionPage;
+import com.microsoft.graph.requests.EventCollectionRequest;
 import com.microsoft.graph.requests.EventCollectionRequestBuilder;
+import com.microsoft.graph.requests.EventCollectionResponse;
+import com.microsoft.graph.requests.EventDeltaCollectionPage;
+import com.microsoft.graph.requests.EventDeltaCollectionRequest;
+import com.microsoft.graph.requests.EventDeltaCollectionRequestBuilder;
+import com.microsoft.graph.requests.EventDeltaCollectionResponse;
 import com.microsoft.graph.requests.GraphServiceClient;
+import com.microsoft.graph.requests.UserRequest;
+import com.microsoft.graph.serializer.ISerializer;
 
+import java.io.IOException;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+import okhttp3.Call;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
 import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
 
 // Singleton class - the app only needs a single instance
 // of the Graph client
 public class GraphHelper {
+    // Limit on $batch requests in flight for bulk operations
+    private static final int MAX_CONCURRENT_BATCHES = 4;
+
     private static GraphHelper INSTANCE = null;
     private final GraphServiceClient<Request> mClient;
+    private final GraphExecutors mExecutors;
+    private final ThrottlingCallFactory mThrottling;
+    private final PageSizePolicy mPageSizePolicy = new PageSizePolicy();
+    private final RequestCoalescer mCoalescer = new RequestCoalescer();
+    // Pages of calendar view downloads in flight, by request key
+    private final Map<String, CalendarPageFanOut> mStreamPages = new HashMap<>();
+    private final CalendarWindowCache mWindowCache = new CalendarWindowCache();
+    private volatile boolean mDeltaSyncEnabled = true;
+    // Built from the window cache when it was at this version
+    private EventIntervalIndex mIntervalIndex = null;
+    private long mIntervalIndexVersion = -1;
+    // Holds events synced in this session, and those in the local
+    // store once it has been loaded for this user
+    private final EventSearchIndex mSearchIndex = new EventSearchIndex();
+    private String mSearchIndexUserId = null;
+    // The outbox send in progress, each send is chained onto the last
+    private CompletableFuture<OutboxSendResult> mOutboxSend =
+            CompletableFuture.completedFuture(OutboxSendResult.EMPTY);
 
-    private GraphHelper() {
+    private GraphHelper(@Nullable OkHttpClient baseHttpClient,
+                        @NonNull GraphExecutors executors) {
         AuthenticationHelper authProvider = AuthenticationHelper.getInstance();
+        mExecutors = executors;
 
-        mClient = GraphServiceClient.builder()
-                .authenticationProvider(authProvider).buildClient();
+        // A custom client must include Graph's authentication handler
+        OkHttpClient httpClient = (baseHttpClient == null
+                ? ThrottlingCallFactory.createClientBuilder(authProvider)
+                : baseHttpClient.newBuilder())
+                // Run HTTP calls on the network pool
+                .dispatcher(new Dispatcher(executors.network()))
+                // Report the size of calendar responses to the page size
+                // policy, counted as the body is read since Graph doesn't
+                // send a length for compressed or chunked responses
+                .addInterceptor(chain -> {
+                    Response response = chain.proceed(chain.request());
+                    ResponseBody body = response.body();
+                    if (body == null ||
+                            !chain.request().url().encodedPath().contains("/calendarView")) {
+                        return response;
+                    }
+                    return response.newBuilder()
+                            .body(new CountingResponseBody(body, (bytes, complete) -> {
+                                if (complete) {
+                                    mPageSizePolicy.recordPayloadBytes(bytes);
+                                }
+                            }))
+                            .build();
+                })
+                // Record latency, sizes, retries and failures of each attempt
+                .addInterceptor(new MetricsInterceptor(GraphMetrics.getInstance()))
+                .build();
+
+        // Retries throttled requests by scheduling new calls on the
+        // client, so a request waiting to retry doesn't hold a network thread
+        mThrottling = ThrottlingCallFactory.create(httpClient, executors.scheduler());
+        mClient = GraphServiceClient.builder(Call.Factory.class, Request.class)
+                .authenticationProvider(authProvider)
+                .httpClient(mThrottling)
+                .buildClient();
     }
 
     public static synchronized GraphHelper getInstance() {
         if (INSTANCE == null) {
-            INSTANCE = new GraphHelper();
+            INSTANCE = new GraphHelper(null, GraphExecutors.getDefault());
         }
 
         return INSTANCE;
     }
 
+    // Version called from MainActivity to plug in a custom HTTP client,
+    // for example one with a disk cache. Has no effect if the instance
+    // has already been created
+    public static synchronized GraphHelper getInstance(@NonNull OkHttpClient httpClient) {
+        return getInstance(httpClient, GraphExecutors.getDefault());
+    }
+
+    // Version that also sets the thread pools used for network calls,
+    // local storage and continuations
+    public static synchronized GraphHelper getInstance(@NonNull OkHttpClient httpClient,
+                                                       @NonNull GraphExecutors executors) {
+        if (INSTANCE == null) {
+            INSTANCE = new GraphHelper(httpClient, executors);
+        }
+
+        return INSTANCE;
+    }
+
+    public GraphExecutors getExecutors() {
+        return mExecutors;
+    }
+
+    // Retries of throttled requests and the shared rate limit
+    public ThrottlingCallFactory getThrottling() {
+        return mThrottling;
+    }
+
+    // When enabled, stored calendar windows are refreshed with
+    // calendarView/delta instead of downloading the whole window
+    public void setDeltaSyncEnabled(boolean enabled) {
+        mDeltaSyncEnabled = enabled;
+    }
+
+    // Controls the page size used for calendarView and calendarView/delta
+    public PageSizePolicy getPageSizePolicy() {
+        return mPageSizePolicy;
+    }
+
+    // Shares identical requests that are in flight at the same time
+    public RequestCoalescer getRequestCoalescer() {
+        return mCoalescer;
+    }
+
+    // Calendar view results loaded in this session, by range and time zone
+    public CalendarWindowCache getWindowCache() {
+        return mWindowCache;
+    }
+
+    // Index of the events in the window cache, for finding conflicts
+    // without a request. Rebuilt on the parsing pool if the cache has
+    // changed since it was last built
+    public CompletableFuture<EventIntervalIndex> getIntervalIndex() {
+        return CompletableFuture.supplyAsync(() -> {
+            synchronized (mWindowCache) {
+                long version = mWindowCache.getVersion();
+                if (mIntervalIndex == null || mIntervalIndexVersion != version) {
+                    mIntervalIndex = EventIntervalIndex.build(mWindowCache.getAllEvents());
+                    mIntervalIndexVersion = version;
+                }
+                return mIntervalIndex;
+            }
+        }, mExecutors.parsing());
+    }
+
+    // Index for searching the user's events offline. Stored events
+    // are added on the parsing pool the first time it is requested,
+    // after that it is kept up to date as windows sync
+    public CompletableFuture<EventSearchIndex> getSearchIndex() {
+        return CompletableFuture.supplyAsync(() -> {
+            String userId = AuthenticationHelper.getInstance().getAccountId();
+            synchronized (mSearchIndex) {
+                if (userId != null && !userId.equals(mSearchIndexUserId)) {
+                    // Events already synced in this session are newer
+                    for (Event event : EventStore.getInstance().getAllEvents(userId)) {
+                        mSearchIndex.putIfAbsent(event);
+                    }
+                    mSearchIndexUserId = userId;
+                }
+                return mSearchIndex;
+            }
+        }, mExecutors.parsing());
+    }
+
+    // Removes every indexed event, used on sign out
+    public void clearSearchIndex() {
+        synchronized (mSearchIndex) {
+            mSearchIndex.clear();
+            mSearchIndexUserId = null;
+        }
+    }
+
+    // Loads the serializer's type adapters for the responses needed at
+    // startup, so the first /me and calendar requests don't pay for it
+    public void warmUp() {
+        ISerializer serializer = mClient.getSerializer();
+        serializer.deserializeObject("{\"displayName\":\"\"}", User.class);
+        serializer.deserializeObject("{\"value\":[{\"start\":{\"dateTime\":" +
+                "\"2023-01-01T00:00:00\",\"timeZone\":\"UTC\"}}]}",
+                EventCollectionResponse.class);
+    }
+
+    // Creates a batch for combining several requests into
+    // a single round trip to Graph
+    public GraphBatch newBatch() {
+        return new GraphBatch(mClient, mThrottling, mExecutors.scheduler());
+    }
+
     public CompletableFuture<User> getUser() {
+        final UserRequest request = buildUserRequest();
+        return mCoalescer.coalesce(RequestCoalescer.getKey(request), request::getAsync);
+    }
+
+    private UserRequest buildUserRequest() {
         // GET /me (logged in user)
         return mClient.me().buildRequest()
-                .select("displayName,mail,mailboxSettings,userPrincipalName")
-                .getAsync();
+                .select("displayName,mail,mailboxSettings,userPrincipalName");
+    }
+
+    // GET /me/mailboxSettings, which GraphHttpCache keeps for a short
+    // time, so repeat sign ins usually read it without the network
+    public CompletableFuture<MailboxSettings> getMailboxSettings() {
+        final CustomRequest<MailboxSettings> request = mClient
+                .customRequest("/me/mailboxSettings", MailboxSettings.class)
+                .buildRequest();
+        return mCoalescer.coalesce(RequestCoalescer.getKey(request), request::getAsync);
+    }
+
+    // Gets the signed-in user together with the calendar view for the
+    // given window in a single $batch round trip, and stores the events
+    // in the local store and the window cache so the calendar can render
+    // without waiting on the network
+    // The mailbox settings are requested alongside the batch with a
+    // plain GET, as requests inside a batch can't be cached, and set
+    // on the returned user
+    // With delta sync enabled the window is prefetched through
+    // calendarView/delta, continuing from the stored delta link if there
+    // is one, so the calendar's first sync of the window is incremental
+    public CompletableFuture<User> getUserAndPrefetchCalendarView(ZonedDateTime viewStart,
+                                                                  ZonedDateTime viewEnd,
+                                                                  String timeZone) {
+        final String userId = AuthenticationHelper.getInstance().getAccountId();
+        final boolean deltaSyncEnabled = mDeltaSyncEnabled && userId != null;
+        final String windowKey = EventStore.getWindowKey(viewStart, viewEnd, timeZone);
+        final CompletableFuture<MailboxSettings> mailboxSettings = getMailboxSettings();
+
+        return CompletableFuture
+                .supplyAsync(() -> deltaSyncEnabled
+                        ? Optional.ofNullable(EventStore.getInstance().getDeltaLink(userId, windowKey))
+                        : Optional.<String>empty(), mExecutors.parsing())
+                .thenCompose(deltaLink -> {
+                    final GraphBatch batch = newBatch();
+                    final CompletableFuture<User> user = batch.add(mClient.me().buildRequest()
+                            .select("displayName,mail,userPrincipalName"), User.class);
+
+                    // A sync of the window already in flight is shared, in
+                    // which case the batch only carries the user request
+                    final CompletableFuture<List<Event>> events = deltaSyncEnabled
+                            ? mCoalescer.coalesce(getSyncKey(userId, windowKey),
+                                    () -> prefetchDelta(batch, viewStart, viewEnd, timeZone,
+                                            userId, windowKey, deltaLink.orElse(null)))
+                            : prefetchCalendarView(batch, viewStart, viewEnd, timeZone, userId,
+                                    windowKey);
+                    batch.execute();
+
+                    events
+                            .thenAcceptAsync(eventList -> mWindowCache.put(viewStart, viewEnd,
+                                    timeZone, EventSummary.fromEvents(eventList)),
+                                    mExecutors.parsing())
+                            .exceptionally(exception -> {
+                                Log.w("GRAPH", "Unable to prefetch calendar view", exception);
+                                return null;
+                            });
+
+                    return user;
+                })
+                .thenCombine(mailboxSettings, (user, settings) -> {
+                    user.mailboxSettings = settings;
+                    return user;
+                });
+    }
+
+    // Adds the first round of a delta sync of the window to the batch
+    // and follows its pages, then applies the changes to the stored window
+    private CompletableFuture<List<Event>> prefetchDelta(GraphBatch batch,
+                                                         ZonedDateTime viewStart,
+                                                         ZonedDateTime viewEnd,
+                                                         String timeZone,
+                                                         String userId,
+                                                         String windowKey,
+                                                         @Nullable String deltaLink) {
+        final IHttpRequest request = deltaLink == null
+                ? buildDeltaRequest(viewStart, viewEnd, timeZone)
+                : new EventDeltaCollectionRequestBuilder(deltaLink, mClient, null)
+                        .buildRequest(getDeltaPagingOptions(timeZone));
+
+        final List<Event> changes = new LinkedList<>();
+        final long requestStart = System.nanoTime();
+        return batch.add(request, EventDeltaCollectionResponse.class)
+                .thenComposeAsync(response -> {
+                    EventDeltaCollectionRequestBuilder nextPage = response.nextLink == null ? null
+                            : new EventDeltaCollectionRequestBuilder(response.nextLink, mClient, null);
+                    return processDeltaPage(new EventDeltaCollectionPage(response, nextPage),
+                            changes, timeZone, null, requestStart, 1);
+                }, mExecutors.continuation())
+                .thenApplyAsync(newDeltaLink -> storeDeltaChanges(viewStart, viewEnd, userId,
+                        windowKey, changes, deltaLink == null, newDeltaLink), mExecutors.parsing());
+    }
+
+    // Adds the first page of the calendar view to the batch and follows
+    // the rest, then replaces the stored window, used without delta sync
+    private CompletableFuture<List<Event>> prefetchCalendarView(GraphBatch batch,
+                                                                ZonedDateTime viewStart,
+                                                                ZonedDateTime viewEnd,
+                                                                String timeZone,
+                                                                @Nullable String userId,
+                                                                String windowKey) {
+        final List<Option> pagingOptions = new LinkedList<>();
+        pagingOptions.add(new HeaderOption("Prefer",
+                "outlook.timezone=\"" + timeZone + "\""));
+
+        final long requestStart = System.nanoTime();
+        return batch.add(buildCalendarViewRequest(viewStart, viewEnd, timeZone),
+                        EventCollectionResponse.class)
+                .thenComposeAsync(response -> {
+                    EventCollectionRequestBuilder nextPage = response.nextLink == null ? null
+                            : new EventCollectionRequestBuilder(response.nextLink, mClient, null);
+                    return processPage(new EventCollectionPage(response, nextPage),
+                            new LinkedList<>(), pagingOptions, null, requestStart, 1);
+                }, mExecutors.continuation())
+                .thenApplyAsync(eventList -> {
+                    if (userId != null) {
+                        EventStore.getInstance().putEvents(userId, windowKey, eventList);
+                        mSearchIndex.replaceRange(viewStart.toInstant().toEpochMilli(),
+                                viewEnd.toInstant().toEpochMilli(), eventList);
+                    }
+                    return eventList;
+                }, mExecutors.parsing());
+    }
+
+    // True if the request, on its own or in a batch, failed because Graph
+    // was still throttling or unavailable after ThrottlingCallFactory's retries
+    public static boolean isThrottled(@Nullable Throwable exception) {
+        for (Throwable cause = exception; cause != null; cause = cause.getCause()) {
+            int code;
+            if (cause instanceof GraphServiceException) {
+                code = ((GraphServiceException) cause).getResponseCode();
+            } else if (cause instanceof BatchStepException) {
+                code = ((BatchStepException) cause).getStatusCode();
+            } else {
+                continue;
+            }
+            return code == 429 || code == 503 || code == 504;
+        }
+
+        return false;
+    }
+
+    // The user's mailbox time zone, defaulting to UTC
+    @NonNull
+    public static String getMailboxTimeZone(@NonNull User user) {
+        return (user.mailboxSettings == null || user.mailboxSettings.timeZone == null)
+                ? "UTC" : user.mailboxSettings.timeZone;
+    }
+
+    // Stale-while-revalidate version of getCalendarView
+    // Any events previously stored for the same user and window are
+    // passed to the listener as soon as they are read from the in-memory
+    // window cache or the local store.
+    // The returned future completes with the events from Graph, which
+    // replace the stored copy. Events are returned as summaries, the
+    // SDK's Event objects are only kept while a request is in progress
+    public CompletableFuture<List<EventSummary>> getCalendarView(ZonedDateTime viewStart,
+                                                                 ZonedDateTime viewEnd,
+                                                                 String timeZone,
+                                                                 @NonNull ICachedEventsListener listener) {
+        return getCalendarView(viewStart, viewEnd, timeZone, listener, null);
+    }
+
+    // Stale-while-revalidate version of getCalendarView that also
+    // streams each page downloaded from Graph to the page listener
+    // Pages are only streamed when the whole window is downloaded,
+    // an incremental delta sync completes the future directly
+    public CompletableFuture<List<EventSummary>> getCalendarView(ZonedDateTime viewStart,
+                                                                 ZonedDateTime viewEnd,
+                                                                 String timeZone,
+                                                                 @NonNull ICachedEventsListener listener,
+                                                                 @Nullable ICalendarPageListener pageListener) {
+        final String userId = AuthenticationHelper.getInstance().getAccountId();
+        if (userId == null) {
+            return streamCalendarView(viewStart, viewEnd, timeZone, pageListener)
+                    .thenApplyAsync(EventSummary::fromEvents, mExecutors.parsing());
+        }
+
+        final EventStore eventStore = EventStore.getInstance();
+        final String windowKey = EventStore.getWindowKey(viewStart, viewEnd, timeZone);
+
+        // Start the network request and the local read together
+        final boolean deltaSyncEnabled = mDeltaSyncEnabled;
+        final CompletableFuture<List<EventSummary>> remoteEvents = (deltaSyncEnabled
+                ? syncCalendarView(viewStart, viewEnd, timeZone, pageListener)
+                : streamCalendarView(viewStart, viewEnd, timeZone, pageListener))
+                .thenApplyAsync(eventList -> {
+                    if (!deltaSyncEnabled) {
+                        eventStore.putEvents(userId, windowKey, eventList);
+                        mSearchIndex.replaceRange(viewStart.toInstant().toEpochMilli(),
+                                viewEnd.toInstant().toEpochMilli(), eventList);
+                    }
+
+                    // Keep the results in memory for later visits
+                    List<EventSummary> summaries = EventSummary.fromEvents(eventList);
+                    mWindowCache.put(viewStart, viewEnd, timeZone, summaries);
+                    return summaries;
+                }, mExecutors.parsing());
+
+        // Windows already loaded in this session are read from
+        // memory, others from the local store
+        CompletableFuture
+                .supplyAsync(() -> {
+                    List<EventSummary> cachedEvents = mWindowCache.get(viewStart, viewEnd, timeZone);
+                    if (cachedEvents != null) {
+                        return cachedEvents;
+                    }
+
+                    List<Event> storedEvents = eventStore.getEvents(userId, windowKey);
+                    return storedEvents == null ? null : EventSummary.fromEvents(storedEvents);
+                }, mExecutors.parsing())
+                .thenAccept(cachedEvents -> {
+                    // Only report the stored events if Graph hasn't already
+                    // answered. They are still shown if the request failed,
+                    // for example straight away while offline
+                    if (cachedEvents != null && (!remoteEvents.isDone() ||
+                            remoteEvents.isCompletedExceptionally())) {
+                        listener.onCachedEvents(cachedEvents);
+                    }
+                });
+
+        return remoteEvents;
     }
 
     public CompletableFuture<List<Event>> getCalendarView(ZonedDateTime viewStart,
                                                           ZonedDateTime viewEnd,
                                                           String timeZone) {
+        return streamCalendarView(viewStart, viewEnd, timeZone, null);
+    }
+
+    // Streaming version of getCalendarView
+    // Each page is passed to the listener as soon as it arrives, and
+    // the returned future completes with every event once the last
+    // page has been received
+    public CompletableFuture<List<Event>> streamCalendarView(ZonedDateTime viewStart,
+                                                             ZonedDateTime viewEnd,
+                                                             String timeZone,
+                                                             @Nullable ICalendarPageListener pageListener) {
+
+        final List<Event> allEvents = new LinkedList<>();
+        // Create a separate list of options for the paging requests
+        // paging request should not include the query parameters from the initial
+        // request, but should include the headers.
+        final List<Option> pagingOptions = new LinkedList<>();
+        pagingOptions.add(new HeaderOption("Prefer",
+                "outlook.timezone=\"" + timeZone + "\""));
+
+        // Identical requests already in flight are joined. Every caller
+        // receives the pages, a caller joining part way through is first
+        // given the pages already downloaded
+        final EventCollectionRequest request = buildCalendarViewRequest(viewStart, viewEnd, timeZone);
+        final String key = RequestCoalescer.getKey(request);
+        final CompletableFuture<List<Event>> events;
+        synchronized (mStreamPages) {
+            CalendarPageFanOut existing = mStreamPages.get(key);
+            final CalendarPageFanOut pages = existing == null ? new CalendarPageFanOut() : existing;
+            if (existing == null) {
+                mStreamPages.put(key, pages);
+            }
+            if (pageListener != null) {
+                pages.addListener(pageListener);
+            }
 
+            final AtomicBoolean started = new AtomicBoolean(false);
+            events = mCoalescer.coalesce(key, () -> {
+                started.set(true);
+                final long requestStart = System.nanoTime();
+                return request.getAsync()
+                        .thenComposeAsync(eventPage -> processPage(eventPage, allEvents,
+                                pagingOptions, pages, requestStart, 1), mExecutors.continuation())
+                        // Removed before the coalescer forgets the request, so a
+                        // caller that finds the pages always joins the same request
+                        .whenComplete((eventList, exception) -> {
+                            synchronized (mStreamPages) {
+                                mStreamPages.remove(key, pages);
+                            }
+                        });
+            });
+
+            // Joined a request that was completing as this call was made,
+            // the result is returned without pages
+            if (existing == null && !started.get()) {
+                mStreamPages.remove(key, pages);
+            }
+        }
+
+        // Callers share the download, each gets its own read-only list
+        return events.thenApply(eventList ->
+                Collections.unmodifiableList(new ArrayList<>(eventList)));
+    }
+
+    // Stops passing pages of the downloads in flight to the listener,
+    // for example once the view it renders into has been destroyed
+    public void removeCalendarPageListener(@NonNull ICalendarPageListener pageListener) {
+        synchronized (mStreamPages) {
+            for (CalendarPageFanOut pages : mStreamPages.values()) {
+                pages.removeListener(pageListener);
+            }
+        }
+    }
+
+    private EventCollectionRequest buildCalendarViewRequest(ZonedDateTime viewStart,
+                                                            ZonedDateTime viewEnd,
+                                                            String timeZone) {
         final List<Option> options = new LinkedList<>();
         options.add(new QueryOption("startDateTime",
                 viewStart.format(DateTimeFormatter.ISO_OFFSET_DATE_TIME)));
@@ -70,48 +566,532 @@ public class GraphHelper {
         options.add(new HeaderOption("Prefer",
                 "outlook.timezone=\"" + timeZone + "\""));
 
-        final List<Event> allEvents = new LinkedList<>();
-        // Create a separate list of options for the paging requests
-        // paging request should not include the query parameters from the initial
-        // request, but should include the headers.
-        final List<Option> pagingOptions = new LinkedList<>();
-        pagingOptions.add(new HeaderOption("Prefer",
-                "outlook.timezone=\"" + timeZone + "\""));
-
+        // The $top value is carried in the next links, so the
+        // page size is fixed for the rest of this request
         return mClient.me().calendarView()
                 .buildRequest(options)
-                .select("subject,organizer,start,end")
+                // location and bodyPreview are only used by the search index
+                .select("subject,organizer,start,end,changeKey,location,bodyPreview")
                 .orderBy("start/dateTime")
-                .top(5)
-                .getAsync()
-                .thenCompose(eventPage -> processPage(eventPage, allEvents, pagingOptions));
+                .top(mPageSizePolicy.getPageSize());
     }
 
     private CompletableFuture<List<Event>> processPage(EventCollectionPage currentPage,
                                                        List<Event> eventList,
-                                                       List<Option> options) {
+                                                       List<Option> options,
+                                                       @Nullable ICalendarPageListener pageListener,
+                                                       long requestStart,
+                                                       int pageCount) {
+        recordPage(currentPage.getCurrentPage().size(), requestStart);
         eventList.addAll(currentPage.getCurrentPage());
 
+        // Deliver the page before requesting the next one
+        if (pageListener != null) {
+            pageListener.onPage(EventSummary.fromEvents(currentPage.getCurrentPage()));
+        }
+
         // Check if there is another page of results
         EventCollectionRequestBuilder nextPage = currentPage.getNextPage();
         if (nextPage != null) {
             // Request the next page and repeat
+            final long pageStart = System.nanoTime();
             return nextPage.buildRequest(options)
                     .getAsync()
-                    .thenCompose(eventPage -> processPage(eventPage, eventList, options));
+                    .thenComposeAsync(eventPage -> processPage(eventPage, eventList, options,
+                            pageListener, pageStart, pageCount + 1), mExecutors.continuation());
         } else {
             // No more pages, complete the future
             // with the complete list
+            GraphMetrics.getInstance().recordPageCount("calendarView", pageCount);
             return CompletableFuture.completedFuture(eventList);
         }
     }
 
+    // Incrementally syncs the window into the local event store
+    // using calendarView/delta, then returns the stored events
+    // Only events added, updated, or removed since the last sync
+    // are downloaded once a delta link has been stored for the window
+    public CompletableFuture<List<Event>> syncCalendarView(ZonedDateTime viewStart,
+                                                           ZonedDateTime viewEnd,
+                                                           String timeZone) {
+        return syncCalendarView(viewStart, viewEnd, timeZone, null);
+    }
+
+    // Version of syncCalendarView that streams pages to the listener
+    // during the initial sync of a window
+    public CompletableFuture<List<Event>> syncCalendarView(ZonedDateTime viewStart,
+                                                           ZonedDateTime viewEnd,
+                                                           String timeZone,
+                                                           @Nullable ICalendarPageListener pageListener) {
+        final String userId = AuthenticationHelper.getInstance().getAccountId();
+        if (userId == null) {
+            return streamCalendarView(viewStart, viewEnd, timeZone, pageListener);
+        }
+
+        final EventStore eventStore = EventStore.getInstance();
+        final String windowKey = EventStore.getWindowKey(viewStart, viewEnd, timeZone);
+
+        // Two syncs of the same window at once would download
+        // the same changes, so concurrent callers share one sync
+        return mCoalescer.coalesce(getSyncKey(userId, windowKey), () -> CompletableFuture
+                .supplyAsync(() -> eventStore.getDeltaLink(userId, windowKey), mExecutors.parsing())
+                .thenCompose(deltaLink -> {
+                    if (deltaLink == null) {
+                        return startDeltaSync(viewStart, viewEnd, timeZone, userId, windowKey,
+                                pageListener);
+                    }
+
+                    final List<Event> changes = new LinkedList<>();
+                    final long requestStart = System.nanoTime();
+                    return new EventDeltaCollectionRequestBuilder(deltaLink, mClient, null)
+                            .buildRequest(getDeltaPagingOptions(timeZone))
+                            .getAsync()
+                            .thenComposeAsync(eventPage -> processDeltaPage(eventPage, changes,
+                                    timeZone, null, requestStart, 1), mExecutors.continuation())
+                            .thenApplyAsync(newDeltaLink -> storeDeltaChanges(viewStart,
+                                    viewEnd, userId, windowKey, changes, false, newDeltaLink),
+                                    mExecutors.parsing())
+                            .handle((eventList, exception) -> {
+                                if (exception == null) {
+                                    return CompletableFuture.completedFuture(eventList);
+                                }
+
+                                // Graph returns 410 Gone when the delta token has expired,
+                                // the window must be synced again from the start
+                                Throwable cause = exception instanceof CompletionException
+                                        ? exception.getCause() : exception;
+                                if (cause instanceof GraphServiceException &&
+                                        ((GraphServiceException) cause).getResponseCode() == 410) {
+                                    return startDeltaSync(viewStart, viewEnd, timeZone,
+                                            userId, windowKey, pageListener);
+                                }
+
+                                CompletableFuture<List<Event>> failed = new CompletableFuture<>();
+                                failed.completeExceptionally(cause);
+                                return failed;
+                            })
+                            .thenCompose(future -> future);
+                }));
+    }
+
+    // Performs the initial round of a delta sync, which returns
+    // every event in the window, and replaces the stored events
+    private CompletableFuture<List<Event>> startDeltaSync(ZonedDateTime viewStart,
+                                                          ZonedDateTime viewEnd,
+                                                          String timeZone,
+                                                          String userId,
+                                                          String windowKey,
+                                                          @Nullable ICalendarPageListener pageListener) {
+        final List<Event> allEvents = new LinkedList<>();
+        final long requestStart = System.nanoTime();
+        return buildDeltaRequest(viewStart, viewEnd, timeZone)
+                .getAsync()
+                .thenComposeAsync(eventPage -> processDeltaPage(eventPage, allEvents, timeZone,
+                        pageListener, requestStart, 1), mExecutors.continuation())
+                .thenApplyAsync(deltaLink -> storeDeltaChanges(viewStart, viewEnd, userId,
+                        windowKey, allEvents, true, deltaLink), mExecutors.parsing());
+    }
+
+    // The request for the initial round of a delta sync of the window
+    // calendarView/delta does not support $select, $orderBy or $top,
+    // the page size is requested with a Prefer header instead
+    private EventDeltaCollectionRequest buildDeltaRequest(ZonedDateTime viewStart,
+                                                          ZonedDateTime viewEnd,
+                                                          String timeZone) {
+        final List<Option> options = getDeltaPagingOptions(timeZone);
+        options.add(new QueryOption("startDateTime",
+                viewStart.format(DateTimeFormatter.ISO_OFFSET_DATE_TIME)));
+        options.add(new QueryOption("endDateTime",
+                viewEnd.format(DateTimeFormatter.ISO_OFFSET_DATE_TIME)));
+        return mClient.me().calendarView().delta().buildRequest(options);
+    }
+
+    // Applies a round of delta changes to the stored window and the
+    // search index, and returns the window's events. replace is true
+    // for the initial round, which returns every event in the window
+    // Performs disk I/O - do not call from the main thread
+    private List<Event> storeDeltaChanges(ZonedDateTime viewStart,
+                                          ZonedDateTime viewEnd,
+                                          String userId,
+                                          String windowKey,
+                                          List<Event> changes,
+                                          boolean replace,
+                                          String deltaLink) {
+        EventStore.getInstance().applyChanges(userId, windowKey, changes, replace, deltaLink);
+        List<Event> events = getSyncedEvents(userId, windowKey);
+        if (replace) {
+            mSearchIndex.replaceRange(viewStart.toInstant().toEpochMilli(),
+                    viewEnd.toInstant().toEpochMilli(), events);
+        } else {
+            updateSearchIndex(changes);
+        }
+        return events;
+    }
+
+    // Key shared by every sync of a stored window
+    private static String getSyncKey(String userId, String windowKey) {
+        return "SYNC " + userId + " " + windowKey;
+    }
+
+    // Applies the changes from an incremental delta sync to the
+    // search index, only the changed events are re-indexed
+    private void updateSearchIndex(List<Event> changes) {
+        for (Event event : changes) {
+            if (event.id == null) {
+                continue;
+            }
+
+            if (EventStore.isRemoved(event)) {
+                mSearchIndex.remove(event.id);
+            } else {
+                mSearchIndex.put(event);
+            }
+        }
+    }
+
+    // Follows the next links of a delta response, collecting the changes,
+    // and completes with the delta link returned on the final page
+    private CompletableFuture<String> processDeltaPage(EventDeltaCollectionPage currentPage,
+                                                       List<Event> changes,
+                                                       String timeZone,
+                                                       @Nullable ICalendarPageListener pageListener,
+                                                       long requestStart,
+                                                       int pageCount) {
+        recordPage(currentPage.getCurrentPage().size(), requestStart);
+        changes.addAll(currentPage.getCurrentPage());
+
+        // Delta pages are not ordered by start time, and removed
+        // events are never passed to the listener
+        if (pageListener != null) {
+            List<EventSummary> page = new ArrayList<>(currentPage.getCurrentPage().size());
+            for (Event event : currentPage.getCurrentPage()) {
+                if (!EventStore.isRemoved(event)) {
+                    page.add(EventSummary.fromEvent(event));
+                }
+            }
+            pageListener.onPage(page);
+        }
+
+        EventDeltaCollectionRequestBuilder nextPage = currentPage.getNextPage();
+        if (nextPage != null) {
+            // The Prefer header is rebuilt for each page so
+            // adaptive page size changes apply immediately
+            final long pageStart = System.nanoTime();
+            return nextPage.buildRequest(getDeltaPagingOptions(timeZone))
+                    .getAsync()
+                    .thenComposeAsync(eventPage -> processDeltaPage(eventPage, changes, timeZone,
+                            pageListener, pageStart, pageCount + 1), mExecutors.continuation());
+        } else {
+            GraphMetrics.getInstance().recordPageCount("calendarView/delta", pageCount);
+            return CompletableFuture.completedFuture(currentPage.deltaLink());
+        }
+    }
+
+    private List<Event> getSyncedEvents(String userId, String windowKey) {
+        List<Event> events = EventStore.getInstance().getEvents(userId, windowKey);
+        if (events == null) {
+            throw new IllegalStateException("Unable to read synced events from the event store");
+        }
+
+        return events;
+    }
+
+    private List<Option> getDeltaPagingOptions(String timeZone) {
+        final List<Option> options = new LinkedList<>();
+        options.add(new HeaderOption("Prefer",
+                "outlook.timezone=\"" + timeZone + "\""));
+        options.add(new HeaderOption("Prefer", mPageSizePolicy.getPreferHeaderValue()));
+        return options;
+    }
+
+    private void recordPage(int itemCount, long requestStart) {
+        mPageSizePolicy.recordPage(itemCount,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - requestStart));
+    }
+
     public CompletableFuture<Event> createEvent(String subject,
                                                 @NonNull ZonedDateTime start,
                                                 @NonNull ZonedDateTime end,
                                                 String timeZone,
                                                 @NonNull String[] attendees,
                                                 String body) {
+        return createEvent(subject, start, end, timeZone, attendees, body, false);
+    }
+
+    // Version that stores the event in the outbox when the device is
+    // offline, to be created once connectivity returns. Events are also
+    // queued while older ones are waiting, so they are created in order
+    // A queued event is returned without an ID
+    public CompletableFuture<Event> createEvent(String subject,
+                                                @NonNull ZonedDateTime start,
+                                                @NonNull ZonedDateTime end,
+                                                String timeZone,
+                                                @NonNull String[] attendees,
+                                                String body,
+                                                boolean queueIfOffline) {
+        final Event newEvent = buildEvent(subject, start, end, timeZone, attendees, body);
+        // Lets Graph recognize the event if the request is sent again
+        newEvent.transactionId = UUID.randomUUID().toString();
+
+        final String userId = getOutboxUserId();
+        if (!queueIfOffline || userId == null) {
+            return postEvent(newEvent);
+        }
+
+        final EventOutbox outbox = EventOutbox.getInstance();
+        return CompletableFuture
+                .supplyAsync(() -> !OutboxSync.getInstance().isOnline() ||
+                        outbox.getPendingCount(userId) > 0, mExecutors.parsing())
+                .thenCompose(shouldQueue -> shouldQueue
+                        ? queueEvent(outbox, userId, newEvent)
+                        : postEvent(newEvent).handle((event, exception) -> {
+                            if (exception == null) {
+                                return CompletableFuture.completedFuture(event);
+                            }
+                            if (isNetworkFailure(exception)) {
+                                return queueEvent(outbox, userId, newEvent);
+                            }
+
+                            CompletableFuture<Event> failed = new CompletableFuture<>();
+                            failed.completeExceptionally(exception instanceof CompletionException
+                                    ? exception.getCause() : exception);
+                            return failed;
+                        }).thenCompose(future -> future));
+    }
+
+    private CompletableFuture<Event> postEvent(Event newEvent) {
+        return mClient.me().events().buildRequest()
+                .postAsync(newEvent)
+                .thenApplyAsync(event -> {
+                    addCreatedEvent(event);
+                    return event;
+                }, mExecutors.parsing());
+    }
+
+    // Adds a created event to the cached windows it falls in, so the
+    // calendar and the conflict index include it without a reload
+    private void addCreatedEvent(Event event) {
+        mWindowCache.add(EventSummary.fromEvent(event));
+    }
+
+    private CompletableFuture<Event> queueEvent(EventOutbox outbox, String userId, Event newEvent) {
+        return CompletableFuture
+                .supplyAsync(() -> outbox.add(userId, newEvent), mExecutors.parsing())
+                .thenApply(item -> {
+                    if (item == null) {
+                        throw new IllegalStateException("Unable to queue the event");
+                    }
+
+                    // Send it now if the device came back online meanwhile
+                    OutboxSync.getInstance().requestSync();
+                    return item.getEvent();
+                });
+    }
+
+    // Sends the events queued in the outbox for the signed-in user, oldest
+    // first, in batches. A call made while a send is in progress runs after
+    // it, so events queued meanwhile are included
+    // The result counts the events created, and those Graph rejected,
+    // which are parked in the outbox rather than sent again
+    public synchronized CompletableFuture<OutboxSendResult> sendOutbox() {
+        final String userId = getOutboxUserId();
+        if (userId == null) {
+            return CompletableFuture.completedFuture(OutboxSendResult.EMPTY);
+        }
+
+        mOutboxSend = mOutboxSend
+                .handle((sent, exception) -> null)
+                .thenCompose(unused -> sendOutboxBatch(EventOutbox.getInstance(), userId));
+        return mOutboxSend;
+    }
+
+    private CompletableFuture<OutboxSendResult> sendOutboxBatch(final EventOutbox outbox,
+                                                                final String userId) {
+        return CompletableFuture
+                .supplyAsync(() -> outbox.getPending(userId, GraphBatch.MAX_BATCH_SIZE),
+                        mExecutors.parsing())
+                .thenCompose(items -> {
+                    if (items.isEmpty()) {
+                        return CompletableFuture.completedFuture(OutboxSendResult.EMPTY);
+                    }
+
+                    // Each create depends on the one before it, so Graph
+                    // creates the events in the order they were queued
+                    final GraphBatch batch = newBatch();
+                    final List<CompletableFuture<Event>> futures = new ArrayList<>(items.size());
+                    for (EventOutbox.Item item : items) {
+                        CompletableFuture<?>[] dependsOn = futures.isEmpty()
+                                ? new CompletableFuture<?>[0]
+                                : new CompletableFuture<?>[] { futures.get(futures.size() - 1) };
+                        futures.add(batch.add(mClient.me().events().buildRequest(),
+                                HttpMethod.POST, item.getEvent(), Event.class, dependsOn));
+                    }
+
+                    return batch.execute()
+                            // The result of each create is read from its future
+                            .handle((unused, exception) -> null)
+                            .thenApplyAsync(unused -> {
+                                for (CompletableFuture<Event> future : futures) {
+                                    if (!future.isCompletedExceptionally()) {
+                                        addCreatedEvent(future.join());
+                                    }
+                                }
+                                return removeSentItems(outbox, items, futures);
+                            }, mExecutors.parsing())
+                            // Continue with the next items until one can't be sent.
+                            // Items that only failed on a rejected item before them
+                            // are at the front of the next batch
+                            .thenCompose(result -> result.isEmpty()
+                                    ? CompletableFuture.completedFuture(result)
+                                    : sendOutboxBatch(outbox, userId)
+                                            .thenApply(result::plus));
+                });
+    }
+
+    // Removes the items that were created, and parks those Graph rejected,
+    // up to the first item that should be sent again, which is parked once
+    // it has failed too often
+    private static OutboxSendResult removeSentItems(EventOutbox outbox,
+                                                    List<EventOutbox.Item> items,
+                                                    List<CompletableFuture<Event>> futures) {
+        int sent = 0;
+        int rejected = 0;
+        for (int i = 0; i < items.size(); i++) {
+            EventOutbox.Item item = items.get(i);
+            try {
+                futures.get(i).join();
+            } catch (CompletionException | CancellationException exception) {
+                Throwable cause = exception instanceof CompletionException
+                        ? exception.getCause() : exception;
+                if (isRejected(cause)) {
+                    Log.e("GRAPH", "Parking rejected queued event " + item.getTransactionId(),
+                            cause);
+                    outbox.park(item.getSequence(), String.valueOf(cause));
+                    rejected++;
+                    continue;
+                }
+
+                // Losing the connection isn't a failure of the event, and
+                // neither is a 424 from the item before it failing, only
+                // other errors from Graph count towards parking it
+                if (!isNetworkFailure(cause) && getStatusCode(cause) != 424) {
+                    outbox.recordFailure(item.getSequence(), String.valueOf(cause));
+                    if (item.getAttempts() + 1 >= EventOutbox.MAX_ATTEMPTS) {
+                        Log.e("GRAPH", "Parking queued event " + item.getTransactionId(),
+                                cause);
+                    }
+                }
+                // The items after this one failed on their dependency
+                break;
+            }
+
+            outbox.remove(item.getSequence());
+            sent++;
+        }
+        return new OutboxSendResult(sent, rejected);
+    }
+
+    // Number of events the signed-in user has waiting in the outbox
+    // Performs disk I/O - do not call from the main thread
+    public long getPendingOutboxCount() {
+        String userId = getOutboxUserId();
+        return userId == null ? 0 : EventOutbox.getInstance().getPendingCount(userId);
+    }
+
+    // The account whose outbox is used: the signed-in one, or the one
+    // stored by the last session until sign in completes, for example
+    // when the app starts offline with an expired token
+    @Nullable
+    private static String getOutboxUserId() {
+        String userId = AuthenticationHelper.getInstance().getAccountId();
+        if (userId == null) {
+            UserProfileStore.Profile profile = UserProfileStore.getInstance().load();
+            userId = profile == null ? null : profile.getAccountId();
+        }
+        return userId;
+    }
+
+    // True for errors where sending the same request again
+    // can't succeed, such as an invalid event
+    private static boolean isRejected(Throwable exception) {
+        int code = getStatusCode(exception);
+        return code >= 400 && code < 500 &&
+                code != 401 && code != 403 && code != 408 && code != 424 && code != 429;
+    }
+
+    private static int getStatusCode(Throwable exception) {
+        return exception instanceof BatchStepException
+                ? ((BatchStepException) exception).getStatusCode() : 0;
+    }
+
+    // True if the request failed without a response from Graph
+    private static boolean isNetworkFailure(Throwable exception) {
+        for (Throwable cause = exception; cause != null; cause = cause.getCause()) {
+            if (cause instanceof GraphServiceException) {
+                return false;
+            }
+            if (cause instanceof IOException) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    // Creates many events using $batch requests, with up to
+    // MAX_CONCURRENT_BATCHES batches in flight at a time
+    // The returned list has one result per spec, in the same order,
+    // so that partial failures can be reported per event
+    public CompletableFuture<List<BulkResult<Event>>> createEvents(@NonNull List<EventSpec> specs) {
+        final GraphBatch batch = newBatch();
+        final List<CompletableFuture<Event>> futures = new ArrayList<>(specs.size());
+
+        for (EventSpec spec : specs) {
+            Event newEvent = buildEvent(spec.subject, spec.start, spec.end, spec.timeZone,
+                    spec.attendees, spec.body);
+            futures.add(batch.add(mClient.me().events().buildRequest(),
+                    HttpMethod.POST, newEvent, Event.class));
+        }
+
+        return batch.execute(MAX_CONCURRENT_BATCHES)
+                .thenApply(unused -> getBulkResults(futures));
+    }
+
+    // Deletes many events using $batch requests
+    // The returned list has one result per ID, in the same order
+    public CompletableFuture<List<BulkResult<Void>>> deleteEvents(@NonNull List<String> eventIds) {
+        final GraphBatch batch = newBatch();
+        final List<CompletableFuture<Void>> futures = new ArrayList<>(eventIds.size());
+
+        for (String eventId : eventIds) {
+            futures.add(batch.add(mClient.me().events(eventId).buildRequest(),
+                    HttpMethod.DELETE, null, Void.class));
+        }
+
+        return batch.execute(MAX_CONCURRENT_BATCHES)
+                .thenApply(unused -> getBulkResults(futures));
+    }
+
+    // Every future has completed by the time the batch has executed
+    private static <T> List<BulkResult<T>> getBulkResults(List<CompletableFuture<T>> futures) {
+        final List<BulkResult<T>> results = new ArrayList<>(futures.size());
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                results.add(BulkResult.success(i, futures.get(i).join()));
+            } catch (CompletionException | CancellationException exception) {
+                results.add(BulkResult.failure(i, exception instanceof CompletionException
+                        ? exception.getCause() : exception));
+            }
+        }
+        return results;
+    }
+
+    private static Event buildEvent(String subject,
+                                    @NonNull ZonedDateTime start,
+                                    @NonNull ZonedDateTime end,
+                                    String timeZone,
+                                    @NonNull String[] attendees,
+                                    String body) {
         Event newEvent = new Event();
 
         // Set properties on the event
@@ -160,7 +1140,6 @@ public class GraphHelper {
             newEvent.body.contentType = BodyType.TEXT;
         }
 
-        return mClient.me().events().buildRequest()
-                .postAsync(newEvent);
+        return newEvent;
     }
 }
@@ -0,0 +1,139 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT License.
+
+package com.example.graphsample;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.microsoft.graph.authentication.IAuthenticationProvider;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import okhttp3.Cache;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+// Singleton class - size-bounded disk cache for Graph responses
+// OkHttp's cache only allows one instance per directory
+// Graph marks most responses as requiring revalidation. For the
+// resources listed in CACHEABLE_PATHS the response is kept fresh
+// for a short time, after which OkHttp revalidates it with a
+// conditional request (If-None-Match / If-Modified-Since) when
+// Graph provided a validator
+public class GraphHttpCache {
+    private static final String CACHE_DIRECTORY = "graph_http";
+    private static final long DEFAULT_MAX_BYTES = 10 * 1024 * 1024;
+
+    // Paths, relative to the Graph version, whose responses can be
+    // reused without going to the network. Only plain GET requests
+    // are cached, requests sent inside a $batch never are
+    private static final List<String> CACHEABLE_PATHS = Collections.unmodifiableList(
+            Arrays.asList("/me", "/me/mailboxSettings"));
+
+    private static GraphHttpCache INSTANCE = null;
+    private final Cache mCache;
+    private volatile int mMaxAgeSeconds = 300;
+
+    GraphHttpCache(File directory, long maxBytes) {
+        mCache = new Cache(directory, maxBytes);
+    }
+
+    public static synchronized GraphHttpCache getInstance(Context ctx) {
+        if (INSTANCE == null) {
+            INSTANCE = new GraphHttpCache(
+                    new File(ctx.getApplicationContext().getCacheDir(), CACHE_DIRECTORY),
+                    DEFAULT_MAX_BYTES);
+        }
+
+        return INSTANCE;
+    }
+
+    // Version called after initialization. Does not create an
+    // instance if one doesn't exist
+    public static synchronized GraphHttpCache getInstance() {
+        if (INSTANCE == null) {
+            throw new IllegalStateException(
+                    "GraphHttpCache has not been initialized from MainActivity");
+        }
+
+        return INSTANCE;
+    }
+
+    // How long responses for the cacheable paths are used
+    // before being revalidated
+    public void setMaxAgeSeconds(int maxAgeSeconds) {
+        mMaxAgeSeconds = maxAgeSeconds;
+    }
+
+    // Creates the default Graph HTTP client, with this cache attached
+    @NonNull
+    public OkHttpClient createClient(@NonNull IAuthenticationProvider authProvider) {
+        return addTo(ThrottlingCallFactory.createClientBuilder(authProvider)).build();
+    }
+
+    // Attaches this cache to an existing client configuration
+    @NonNull
+    public OkHttpClient.Builder addTo(@NonNull OkHttpClient.Builder builder) {
+        return builder
+                .cache(mCache)
+                .addNetworkInterceptor(chain -> {
+                    Request request = chain.request();
+                    Response response = chain.proceed(request);
+
+                    if (!"GET".equals(request.method()) || !response.isSuccessful() ||
+                            !isCacheablePath(request.url().encodedPath())) {
+                        return response;
+                    }
+
+                    // Replace Graph's no-cache directive so repeat loads are
+                    // served locally until the max age, then revalidated
+                    return response.newBuilder()
+                            .removeHeader("Pragma")
+                            .header("Cache-Control", "private, max-age=" + mMaxAgeSeconds)
+                            .build();
+                });
+    }
+
+    // Number of requests that went through the cache
+    public int getRequestCount() {
+        return mCache.requestCount();
+    }
+
+    // Number of responses served from the cache, including
+    // conditional requests answered with 304 Not Modified
+    public int getHitCount() {
+        return mCache.hitCount();
+    }
+
+    // Number of requests that needed the network, including
+    // conditional requests
+    public int getNetworkCount() {
+        return mCache.networkCount();
+    }
+
+    // Removes every cached response, used on sign out as
+    // cached responses belong to the signed-in user
+    // Performs disk I/O - do not call from the main thread
+    public void clear() {
+        try {
+            mCache.evictAll();
+        } catch (IOException exception) {
+            Log.e("GRAPH_CACHE", "Error clearing HTTP cache", exception);
+        }
+    }
+
+    private static boolean isCacheablePath(String encodedPath) {
+        // Strip the version segment, e.g. /v1.0
+        int versionEnd = encodedPath.indexOf('/', 1);
+        String path = versionEnd < 0 ? encodedPath : encodedPath.substring(versionEnd);
+        return CACHEABLE_PATHS.contains(path);
+    }
+}
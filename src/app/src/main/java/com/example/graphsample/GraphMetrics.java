@@ -0,0 +1,234 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT License.
+
+package com.example.graphsample;
+
+import androidx.annotation.NonNull;
+
+import java.io.PrintWriter;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Singleton class - collects request metrics for Graph calls
+// Requests are recorded per endpoint by MetricsInterceptor, with
+// latency histograms, byte counts, retries and failures. GraphHelper
+// and AuthenticationHelper add page counts and token acquisition times
+// The collected values can be printed with dump(), which MainActivity
+// exposes through adb shell dumpsys activity
+public class GraphMetrics {
+    private static GraphMetrics INSTANCE = null;
+
+    private final Map<String, EndpointStats> mEndpoints = new ConcurrentHashMap<>();
+    private final Map<String, Histogram> mPageCounts = new ConcurrentHashMap<>();
+    private final Histogram mTokenAcquisition = new Histogram();
+
+    private GraphMetrics() {}
+
+    public static synchronized GraphMetrics getInstance() {
+        if (INSTANCE == null) {
+            INSTANCE = new GraphMetrics();
+        }
+
+        return INSTANCE;
+    }
+
+    // Histogram with fixed bucket bounds, accurate enough to compare
+    // builds without storing every sample
+    public static class Histogram {
+        private static final long[] BOUNDS = {
+                1, 2, 5, 10, 20, 35, 50, 75, 100, 150, 200, 300, 400, 500, 750,
+                1000, 1500, 2000, 3000, 5000, 7500, 10000, 20000, 30000, 60000, Long.MAX_VALUE
+        };
+
+        private final AtomicLongArray mBuckets = new AtomicLongArray(BOUNDS.length);
+        private final AtomicLong mCount = new AtomicLong();
+        private final AtomicLong mSum = new AtomicLong();
+        private final AtomicLong mMax = new AtomicLong();
+
+        public void record(long value) {
+            int bucket = 0;
+            while (value > BOUNDS[bucket]) {
+                bucket++;
+            }
+
+            mBuckets.incrementAndGet(bucket);
+            mCount.incrementAndGet();
+            mSum.addAndGet(value);
+
+            long max = mMax.get();
+            while (value > max && !mMax.compareAndSet(max, value)) {
+                max = mMax.get();
+            }
+        }
+
+        public long getCount() {
+            return mCount.get();
+        }
+
+        public double getMean() {
+            long count = mCount.get();
+            return count == 0 ? 0 : (double) mSum.get() / count;
+        }
+
+        // Upper bound of the bucket containing the given percentile,
+        // capped at the largest value recorded
+        public long getPercentile(double percentile) {
+            long count = mCount.get();
+            if (count == 0) {
+                return 0;
+            }
+
+            long rank = (long) Math.ceil(percentile / 100.0 * count);
+            long seen = 0;
+            for (int i = 0; i < BOUNDS.length; i++) {
+                seen += mBuckets.get(i);
+                if (seen >= rank) {
+                    return Math.min(BOUNDS[i], mMax.get());
+                }
+            }
+
+            return mMax.get();
+        }
+    }
+
+    public static class EndpointStats {
+        private final Histogram mLatency = new Histogram();
+        private final AtomicLong mRequestBytes = new AtomicLong();
+        private final AtomicLong mResponseBytes = new AtomicLong();
+        private final AtomicLong mRetries = new AtomicLong();
+        private final AtomicLong mFailures = new AtomicLong();
+
+        public Histogram getLatency() {
+            return mLatency;
+        }
+
+        public long getRequestBytes() {
+            return mRequestBytes.get();
+        }
+
+        public long getResponseBytes() {
+            return mResponseBytes.get();
+        }
+
+        public long getRetries() {
+            return mRetries.get();
+        }
+
+        public long getFailures() {
+            return mFailures.get();
+        }
+    }
+
+    // Records one HTTP attempt. Byte counts of -1 mean unknown
+    public void recordRequest(@NonNull String endpoint, long latencyMillis,
+                              long requestBytes, long responseBytes,
+                              boolean isRetry, boolean failed) {
+        EndpointStats stats = getEndpointStats(endpoint);
+        stats.mLatency.record(latencyMillis);
+        if (requestBytes > 0) {
+            stats.mRequestBytes.addAndGet(requestBytes);
+        }
+        if (responseBytes > 0) {
+            stats.mResponseBytes.addAndGet(responseBytes);
+        }
+        if (isRetry) {
+            stats.mRetries.incrementAndGet();
+        }
+        if (failed) {
+            stats.mFailures.incrementAndGet();
+        }
+    }
+
+    // Records how many pages one paged request needed
+    public void recordPageCount(@NonNull String operation, int pages) {
+        Histogram histogram = mPageCounts.get(operation);
+        if (histogram == null) {
+            mPageCounts.putIfAbsent(operation, new Histogram());
+            histogram = mPageCounts.get(operation);
+        }
+        histogram.record(pages);
+    }
+
+    public void recordTokenAcquisition(long latencyMillis) {
+        mTokenAcquisition.record(latencyMillis);
+    }
+
+    @NonNull
+    public EndpointStats getEndpointStats(@NonNull String endpoint) {
+        EndpointStats stats = mEndpoints.get(endpoint);
+        if (stats == null) {
+            mEndpoints.putIfAbsent(endpoint, new EndpointStats());
+            stats = mEndpoints.get(endpoint);
+        }
+        return stats;
+    }
+
+    @NonNull
+    public Histogram getTokenAcquisition() {
+        return mTokenAcquisition;
+    }
+
+    // Clears the request and page metrics
+    public void reset() {
+        mEndpoints.clear();
+        mPageCounts.clear();
+    }
+
+    // Turns a request path into an endpoint name by dropping the
+    // version and replacing IDs, so /v1.0/me/events/AAMkAD...= and
+    // every other event ID are reported as /me/events/{id}
+    @NonNull
+    public static String getEndpoint(@NonNull String method, @NonNull String encodedPath) {
+        StringBuilder endpoint = new StringBuilder(method).append(' ');
+        String[] segments = encodedPath.split("/");
+        // segments[0] is empty and segments[1] is the version
+        for (int i = 2; i < segments.length; i++) {
+            String segment = segments[i];
+            endpoint.append('/');
+            if (segment.length() > 24 || segment.contains("%3D") || segment.contains("=")) {
+                endpoint.append("{id}");
+            } else {
+                endpoint.append(segment);
+            }
+        }
+        if (segments.length <= 2) {
+            endpoint.append('/');
+        }
+        return endpoint.toString();
+    }
+
+    // Prints the metrics in a format suited to adb shell dumpsys
+    public void dump(@NonNull String prefix, @NonNull PrintWriter writer) {
+        writer.println(prefix + "Graph requests:");
+        for (Map.Entry<String, EndpointStats> entry : new TreeMap<>(mEndpoints).entrySet()) {
+            EndpointStats stats = entry.getValue();
+            Histogram latency = stats.mLatency;
+            writer.println(String.format(Locale.ROOT,
+                    "%s  %s count=%d p50=%dms p95=%dms p99=%dms mean=%.1fms " +
+                            "sent=%dB received=%dB retries=%d failures=%d",
+                    prefix, entry.getKey(), latency.getCount(),
+                    latency.getPercentile(50), latency.getPercentile(95),
+                    latency.getPercentile(99), latency.getMean(),
+                    stats.getRequestBytes(), stats.getResponseBytes(),
+                    stats.getRetries(), stats.getFailures()));
+        }
+
+        writer.println(prefix + "Pages per request:");
+        for (Map.Entry<String, Histogram> entry : new TreeMap<>(mPageCounts).entrySet()) {
+            Histogram pages = entry.getValue();
+            writer.println(String.format(Locale.ROOT,
+                    "%s  %s count=%d p50=%d p95=%d max=%d mean=%.1f",
+                    prefix, entry.getKey(), pages.getCount(), pages.getPercentile(50),
+                    pages.getPercentile(95), pages.getPercentile(100), pages.getMean()));
+        }
+
+        writer.println(String.format(Locale.ROOT,
+                "%sToken acquisition: count=%d p50=%dms p95=%dms p99=%dms",
+                prefix, mTokenAcquisition.getCount(), mTokenAcquisition.getPercentile(50),
+                mTokenAcquisition.getPercentile(95), mTokenAcquisition.getPercentile(99)));
+    }
+}
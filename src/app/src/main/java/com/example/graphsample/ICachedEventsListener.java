@@ -0,0 +1,10 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT License.
+
+package com.example.graphsample;
+
+import java.util.List;
+
+public interface ICachedEventsListener {
+    void onCachedEvents(final List<EventSummary> events);
+}
@@ -0,0 +1,10 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT License.
+
+package com.example.graphsample;
+
+import java.time.ZonedDateTime;
+
+public interface IDateTimeChangedListener {
+    void onDateTimeChanged(final ZonedDateTime dateTime);
+}
@@ -0,0 +1,10 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT License.
+
+package com.example.graphsample;
+
+public interface IResponseBodyListener {
+    // bytes is the number of bytes read, complete is false if
+    // the body was closed before it was read to the end
+    void onBodyRead(final long bytes, final boolean complete);
+}
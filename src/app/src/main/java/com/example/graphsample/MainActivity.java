@@ -3,6 +3,8 @@
 
 package com.example.graphsample;
 
+import android.app.ActivityManager;
+import android.content.Context;
 import android.os.Bundle;
 import android.util.Log;
 import android.view.Menu;
@@ -12,6 +14,7 @@ import android.widget.FrameLayout;
 import android.widget.ProgressBar;
 import android.widget.TextView;
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.appcompat.app.ActionBarDrawerToggle;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.widget.Toolbar;
@@ -24,6 +27,14 @@ import com.microsoft.identity.client.exception.MsalClientException;
 import com.microsoft.identity.client.exception.MsalServiceException;
 import com.microsoft.identity.client.exception.MsalUiRequiredException;
 
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
+import java.time.ZoneId;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
 
 public class MainActivity extends AppCompatActivity implements NavigationView.OnNavigationItemSelectedListener {
     private static final String SAVED_IS_SIGNED_IN = "isSignedIn";
@@ -38,12 +49,52 @@ public class MainActivity extends AppCompatActivity implements NavigationView.On
     private String mUserName = null;
     private String mUserEmail = null;
     private String mUserTimeZone = null;
+    // True while the user shown is the stored profile,
+    // until sign in has been checked with MSAL and Graph
+    private boolean mIsProfileUnverified = false;
 
     private AuthenticationHelper mAuthHelper = null;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        final StartupTracer tracer = StartupTracer.getInstance();
+        tracer.mark("activity_created");
+
+        // Start the slow parts of startup before inflating the views, so
+        // creating the MSAL application, building and warming up the Graph
+        // client, and reading the stored profile all overlap with it
+        final Context appContext = getApplicationContext();
+        final GraphExecutors executors = GraphExecutors.getDefault();
+        CompletableFuture<AuthenticationHelper> authHelperFuture =
+                AuthenticationHelper.getInstance(appContext)
+                        .whenComplete((authHelper, exception) -> tracer.mark("msal_created"));
+
+        // The Graph client only needs the auth helper as its authentication
+        // provider, token requests wait until the MSAL application is created
+        CompletableFuture<GraphHelper> graphHelperFuture = CompletableFuture.supplyAsync(() -> {
+            // Create the Graph client with a disk cache
+            // for responses that rarely change
+            GraphHelper graphHelper = GraphHelper.getInstance(
+                    GraphHttpCache.getInstance(appContext)
+                            .createClient(AuthenticationHelper.getInstance()));
+            graphHelper.getWindowCache().setMaxBytes(getWindowCacheBudget());
+            graphHelper.warmUp();
+            tracer.mark("graph_client_ready");
+            return graphHelper;
+        }, executors.parsing());
+
+        // The stored profile is only used on a fresh start, otherwise
+        // the signed-in state is restored from the saved instance state
+        final UserProfileStore profileStore = UserProfileStore.getInstance(appContext);
+        CompletableFuture<UserProfileStore.Profile> profileFuture = savedInstanceState != null
+                ? CompletableFuture.completedFuture(null)
+                : CompletableFuture.supplyAsync(() -> {
+                    UserProfileStore.Profile profile = profileStore.load();
+                    tracer.mark("profile_loaded");
+                    return profile;
+                }, executors.parsing());
+
         setContentView(R.layout.activity_main);
 
         // Set the toolbar
@@ -78,24 +129,70 @@ public class MainActivity extends AppCompatActivity implements NavigationView.On
             mUserTimeZone = savedInstanceState.getString(SAVED_USER_TIMEZONE);
             setSignedInState(mIsSignedIn);
         }
+        tracer.mark("views_inflated");
+
+        // Open the local event store, and the outbox of
+        // events waiting to be created
+        EventStore.getInstance(appContext);
+        EventOutbox.getInstance(appContext);
+        OutboxSync.getInstance(appContext);
+
+        // Load time zone rules before the calendar needs them
+        ZoneIdResolver.getInstance().warmInBackground();
 
         showProgressBar();
-        // Get the authentication helper
-        AuthenticationHelper.getInstance(getApplicationContext())
-                .thenAccept(authHelper -> {
+
+        // Show the stored user once the Graph client exists,
+        // as the calendar can be opened from then on
+        CompletableFuture<Void> profileShown = profileFuture
+                .exceptionally(exception -> {
+                    Log.e("AUTH", "Error loading stored profile", exception);
+                    return null;
+                })
+                .thenCombine(graphHelperFuture, (profile, graphHelper) -> profile)
+                .thenAcceptAsync(this::showStoredProfile, executors.mainThread());
+
+        // Check the sign in once the auth helper is ready,
+        // refreshing the stored user if one was shown
+        authHelperFuture.thenCombine(profileShown, (authHelper, ignored) -> authHelper)
+                .thenAcceptAsync(authHelper -> {
                     mAuthHelper = authHelper;
-                    if (!mIsSignedIn) {
+                    setAuthItemsEnabled(true);
+
+                    if (!mIsSignedIn || mIsProfileUnverified) {
                         doSilentSignIn(false);
                     } else {
                         hideProgressBar();
                     }
-                })
+                }, executors.mainThread())
                 .exceptionally(exception -> {
                     Log.e("AUTH", "Error creating auth helper", exception);
                     return null;
                 });
     }
 
+    // Shows the user stored by the last session while
+    // sign in is checked in the background
+    private void showStoredProfile(@Nullable UserProfileStore.Profile profile) {
+        if (profile == null || mIsSignedIn) {
+            return;
+        }
+
+        mUserName = profile.getName();
+        mUserEmail = profile.getEmail();
+        mUserTimeZone = profile.getTimeZone();
+        mIsProfileUnverified = true;
+
+        setSignedInState(true);
+        openHomeFragment(mUserName);
+        hideProgressBar();
+        StartupTracer.getInstance().mark("profile_shown");
+
+        // Send events queued by the stored user once there is a
+        // connection, even if sign in can't complete until then
+        OutboxSync.getInstance().start();
+    }
+
     @Override
     protected void onSaveInstanceState(@NonNull Bundle outState) {
         super.onSaveInstanceState(outState);
@@ -105,6 +202,71 @@ public class MainActivity extends AppCompatActivity implements NavigationView.On
         outState.putString(SAVED_USER_TIMEZONE, mUserTimeZone);
     }
 
+    // Memory for calendar windows loaded in this session, scaled
+    // to the app's heap limit and kept small on low RAM devices
+    private long getWindowCacheBudget() {
+        ActivityManager activityManager = getSystemService(ActivityManager.class);
+        if (activityManager.isLowRamDevice()) {
+            return CalendarWindowCache.DEFAULT_MAX_BYTES / 4;
+        }
+
+        // 1/32 of the heap, e.g. 8 MB with a 256 MB limit
+        long heapBytes = activityManager.getMemoryClass() * 1024L * 1024L;
+        return Math.max(CalendarWindowCache.DEFAULT_MAX_BYTES / 4,
+                Math.min(heapBytes / 32, CalendarWindowCache.DEFAULT_MAX_BYTES * 2));
+    }
+
+    // Prints the Graph request metrics along with the state of the
+    // executors and caches, using:
+    // adb shell dumpsys activity com.example.graphsample/.MainActivity
+    @Override
+    public void dump(@NonNull String prefix, @Nullable FileDescriptor fd,
+                     @NonNull PrintWriter writer, @Nullable String[] args) {
+        super.dump(prefix, fd, writer, args);
+
+        GraphMetrics.getInstance().dump(prefix, writer);
+        StartupTracer.getInstance().dump(prefix, writer);
+
+        // The Graph client is created once the auth helper is ready
+        if (mAuthHelper == null) {
+            return;
+        }
+
+        writer.println(String.format(Locale.ROOT, "%sTokens: hits=%d misses=%d refreshes=%d",
+                prefix, mAuthHelper.getTokenCacheHits(), mAuthHelper.getTokenCacheMisses(),
+                mAuthHelper.getBackgroundRefreshCount()));
+
+        GraphHelper graphHelper = GraphHelper.getInstance();
+        GraphExecutors executors = graphHelper.getExecutors();
+        writer.println(String.format(Locale.ROOT,
+                "%sQueue depth: network=%d parsing=%d continuation=%d",
+                prefix, executors.getNetworkQueueDepth(), executors.getParsingQueueDepth(),
+                executors.getContinuationQueueDepth()));
+        ThrottlingCallFactory throttling = graphHelper.getThrottling();
+        writer.println(String.format(Locale.ROOT,
+                "%sThrottling: throttled=%d retries=%d exhausted=%d tokens=%.1f",
+                prefix, throttling.getThrottledCount(), throttling.getRetryCount(),
+                throttling.getExhaustedCount(), throttling.getAvailableTokens()));
+        String userId = mAuthHelper.getAccountId();
+        writer.println(String.format(Locale.ROOT, "%sOutbox: pending=%d parked=%d online=%b",
+                prefix, userId == null ? 0 : EventOutbox.getInstance().getPendingCount(userId),
+                userId == null ? 0 : EventOutbox.getInstance().getParkedCount(userId),
+                OutboxSync.getInstance().isOnline()));
+        writer.println(String.format(Locale.ROOT, "%sCoalesced requests: %d",
+                prefix, graphHelper.getRequestCoalescer().getCoalescedCount()));
+
+        CalendarWindowCache windowCache = graphHelper.getWindowCache();
+        writer.println(String.format(Locale.ROOT,
+                "%sWindow cache: windows=%d size=%dB max=%dB hits=%d misses=%d",
+                prefix, windowCache.getWindowCount(), windowCache.getSizeBytes(),
+                windowCache.getMaxBytes(), windowCache.getHitCount(), windowCache.getMissCount()));
+
+        GraphHttpCache httpCache = GraphHttpCache.getInstance();
+        writer.println(String.format(Locale.ROOT, "%sHTTP cache: requests=%d hits=%d network=%d",
+                prefix, httpCache.getRequestCount(), httpCache.getHitCount(),
+                httpCache.getNetworkCount()));
+    }
+
     @Override
     public boolean onNavigationItemSelected(@NonNull MenuItem menuItem) {
         // Load the fragment that corresponds to the selected item
@@ -113,6 +275,8 @@ public class MainActivity extends AppCompatActivity implements NavigationView.On
             openHomeFragment(mUserName);
         } else if (itemId == R.id.nav_calendar) {
             openCalendarFragment(mUserTimeZone);
+        } else if (itemId == R.id.nav_search) {
+            openSearchFragment();
         } else if (itemId == R.id.nav_create_event) {
             openNewEventFragment(mUserTimeZone);
         } else if (itemId == R.id.nav_signin) {
@@ -166,9 +330,11 @@ public class MainActivity extends AppCompatActivity implements NavigationView.On
         } else {
             menu.removeItem(R.id.nav_home);
             menu.removeItem(R.id.nav_calendar);
+            menu.removeItem(R.id.nav_search);
             menu.removeItem(R.id.nav_create_event);
             menu.removeItem(R.id.nav_signout);
         }
+        setAuthItemsEnabled(mAuthHelper != null);
 
         // Set the user name and email in the nav drawer
         TextView userName = mHeaderView.findViewById(R.id.user_name);
@@ -187,6 +353,18 @@ public class MainActivity extends AppCompatActivity implements NavigationView.On
         }
     }
 
+    // Signing in or out needs the auth helper, which is still being
+    // created when the stored user is first shown
+    private void setAuthItemsEnabled(boolean enabled) {
+        Menu menu = mNavigationView.getMenu();
+        for (int id : new int[] { R.id.nav_signin, R.id.nav_signout }) {
+            MenuItem item = menu.findItem(id);
+            if (item != null) {
+                item.setEnabled(enabled);
+            }
+        }
+    }
+
     // Load the "Home" fragment
     public void openHomeFragment(String userName) {
         HomeFragment fragment = HomeFragment.createInstance(userName);
@@ -205,6 +383,15 @@ public class MainActivity extends AppCompatActivity implements NavigationView.On
         mNavigationView.setCheckedItem(R.id.nav_calendar);
     }
 
+    // Load the "Search" fragment
+    private void openSearchFragment() {
+        SearchFragment fragment = new SearchFragment();
+        getSupportFragmentManager().beginTransaction()
+                .replace(R.id.fragment_container, fragment)
+                .commit();
+        mNavigationView.setCheckedItem(R.id.nav_search);
+    }
+
     // Load the "New Event" fragment
     private void openNewEventFragment(String timeZone) {
         NewEventFragment fragment = NewEventFragment.createInstance(timeZone);
@@ -225,6 +412,17 @@ public class MainActivity extends AppCompatActivity implements NavigationView.On
     private void signOut() {
         mAuthHelper.signOut();
 
+        // Remove the signed-out user's profile, stored events and responses
+        UserProfileStore.getInstance().clear();
+        OutboxSync.getInstance().stop();
+        GraphHelper.getInstance().getWindowCache().clear();
+        GraphHelper.getInstance().clearSearchIndex();
+        CompletableFuture.runAsync(() -> {
+            EventStore.getInstance().clear();
+            EventOutbox.getInstance().clear();
+            GraphHttpCache.getInstance().clear();
+        });
+
         setSignedInState(false);
         openHomeFragment(mUserName);
     }
@@ -232,19 +430,28 @@ public class MainActivity extends AppCompatActivity implements NavigationView.On
     // Silently sign in - used if there is already a
     // user account in the MSAL cache
     private void doSilentSignIn(boolean shouldAttemptInteractive) {
+        // Token futures complete on a background thread, switch
+        // to the main thread once to handle the result
         mAuthHelper.acquireTokenSilently()
-                .thenAccept(this::handleSignInSuccess)
-                .exceptionally(exception -> {
+                .whenCompleteAsync((authenticationResult, exception) -> {
+                    if (exception == null) {
+                        handleSignInSuccess(authenticationResult);
+                        return;
+                    }
+
                     // Check the type of exception and handle appropriately
-                    Throwable cause = exception.getCause();
+                    Throwable cause = exception instanceof CompletionException
+                            ? exception.getCause() : exception;
                     if (cause instanceof MsalUiRequiredException) {
                         Log.d("AUTH", "Interactive login required");
+                        clearStoredProfile();
                         if (shouldAttemptInteractive) doInteractiveSignIn();
                     } else if (cause instanceof MsalClientException) {
                         MsalClientException clientException = (MsalClientException)cause;
                         if (clientException.getErrorCode().equals("no_current_account") ||
                                 clientException.getErrorCode().equals("no_account_found")) {
                             Log.d("AUTH", "No current account, interactive login required");
+                            clearStoredProfile();
                             if (shouldAttemptInteractive) doInteractiveSignIn();
                         } else {
                             handleSignInFailure(cause);
@@ -253,19 +460,31 @@ public class MainActivity extends AppCompatActivity implements NavigationView.On
                         handleSignInFailure(cause);
                     }
                     hideProgressBar();
-                    return null;
-                });
+                }, GraphExecutors.getDefault().mainThread());
+    }
+
+    // Called when the stored user can no longer sign in silently,
+    // shows the signed-out state in place of the stored user
+    private void clearStoredProfile() {
+        if (mIsProfileUnverified) {
+            mIsProfileUnverified = false;
+            UserProfileStore.getInstance().clear();
+            setSignedInState(false);
+            openHomeFragment(mUserName);
+        }
     }
 
     // Prompt the user to sign in
     private void doInteractiveSignIn() {
         mAuthHelper.acquireTokenInteractively(this)
-                .thenAccept(this::handleSignInSuccess)
-                .exceptionally(exception -> {
-                    handleSignInFailure(exception);
-                    hideProgressBar();
-                    return null;
-                });
+                .whenCompleteAsync((authenticationResult, exception) -> {
+                    if (exception == null) {
+                        handleSignInSuccess(authenticationResult);
+                    } else {
+                        handleSignInFailure(exception);
+                        hideProgressBar();
+                    }
+                }, GraphExecutors.getDefault().mainThread());
     }
 
     // Handles the authentication result
@@ -273,20 +492,51 @@ public class MainActivity extends AppCompatActivity implements NavigationView.On
         // Log the token for debug purposes
         String accessToken = authenticationResult.getAccessToken();
         Log.d("AUTH", String.format("Access token: %s", accessToken));
+        StartupTracer.getInstance().mark("token_acquired");
+
+        // Send any events queued while offline, now and whenever
+        // connectivity returns, even if /me can't be reached
+        OutboxSync.getInstance().start();
 
         // Get Graph client and get user
+        // The current week of the calendar is fetched in the same
+        // round trip, using the device's time zone as a best guess
+        // for the user's mailbox time zone
         GraphHelper graphHelper = GraphHelper.getInstance();
-        graphHelper.getUser()
+        // Mailbox time zones are usually Windows names, request the same
+        // name so the prefetched events match later calendar requests
+        ZoneId deviceZone = ZoneId.systemDefault();
+        String windowsZone = GraphToIana.getWindowsFromIana(deviceZone.getId());
+        CalendarRange week = CalendarRange.current(CalendarRange.Mode.WEEK, deviceZone);
+        graphHelper.getUserAndPrefetchCalendarView(week.getStart(), week.getEnd(),
+                        windowsZone == null ? deviceZone.getId() : windowsZone)
                 .thenAccept(user -> {
-                    mUserName = user.displayName;
-                    mUserEmail = user.mail == null ? user.userPrincipalName : user.mail;
-                    mUserTimeZone = (user.mailboxSettings == null || user.mailboxSettings.timeZone == null)
-                            ? "UTC": user.mailboxSettings.timeZone;
+                    UserProfileStore.Profile profile = new UserProfileStore.Profile(
+                            authenticationResult.getAccount().getId(),
+                            user.displayName,
+                            user.mail == null ? user.userPrincipalName : user.mail,
+                            GraphHelper.getMailboxTimeZone(user));
+                    UserProfileStore.getInstance().save(profile);
 
                     runOnUiThread(() -> {
+                        StartupTracer.getInstance().mark("user_loaded");
                         hideProgressBar();
-                        setSignedInState(true);
-                        openHomeFragment(mUserName);
+
+                        // Only refresh the UI if it isn't already
+                        // showing this user from the stored profile
+                        boolean changed = !mIsSignedIn ||
+                                !Objects.equals(mUserName, profile.getName()) ||
+                                !Objects.equals(mUserEmail, profile.getEmail()) ||
+                                !Objects.equals(mUserTimeZone, profile.getTimeZone());
+                        mIsProfileUnverified = false;
+                        mUserName = profile.getName();
+                        mUserEmail = profile.getEmail();
+                        mUserTimeZone = profile.getTimeZone();
+
+                        if (changed) {
+                            setSignedInState(true);
+                            openHomeFragment(mUserName);
+                        }
                     });
                 })
                 .exceptionally(exception -> {
@@ -294,7 +544,11 @@ public class MainActivity extends AppCompatActivity implements NavigationView.On
 
                     runOnUiThread(()-> {
                         hideProgressBar();
-                        setSignedInState(false);
+                        // Keep showing the stored user if Graph
+                        // couldn't be reached, for example when offline
+                        if (!mIsProfileUnverified) {
+                            setSignedInState(false);
+                        }
                     });
 
                     return null;
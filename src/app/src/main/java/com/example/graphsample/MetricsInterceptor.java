@@ -0,0 +1,69 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT License.
+
+package com.example.graphsample;
+
+import androidx.annotation.NonNull;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+// Records every HTTP attempt made by the Graph client in GraphMetrics
+// Latency is measured to the end of the response body
+// Each retry made by ThrottlingCallFactory is a separate call,
+// so it is seen and recorded separately
+public class MetricsInterceptor implements Interceptor {
+    private final GraphMetrics mMetrics;
+
+    public MetricsInterceptor(@NonNull GraphMetrics metrics) {
+        mMetrics = metrics;
+    }
+
+    @NonNull
+    @Override
+    public Response intercept(@NonNull Chain chain) throws IOException {
+        Request request = chain.request();
+        String endpoint = GraphMetrics.getEndpoint(request.method(), request.url().encodedPath());
+        boolean isRetry = request.header(ThrottlingCallFactory.RETRY_ATTEMPT_HEADER) != null;
+
+        RequestBody requestBody = request.body();
+        long requestBytes = requestBody == null ? 0 : requestBody.contentLength();
+
+        long start = System.nanoTime();
+        Response response;
+        try {
+            response = chain.proceed(request);
+        } catch (IOException exception) {
+            mMetrics.recordRequest(endpoint, elapsedMillis(start), requestBytes, -1,
+                    isRetry, true);
+            throw exception;
+        }
+
+        ResponseBody responseBody = response.body();
+        boolean isFailure = !response.isSuccessful();
+        if (responseBody == null) {
+            mMetrics.recordRequest(endpoint, elapsedMillis(start), requestBytes, -1,
+                    isRetry, isFailure);
+            return response;
+        }
+
+        // Recorded once the body has been read, with the bytes actually
+        // read, as Graph doesn't send a length for compressed or chunked
+        // responses
+        return response.newBuilder()
+                .body(new CountingResponseBody(responseBody, (bytes, complete) ->
+                        mMetrics.recordRequest(endpoint, elapsedMillis(start), requestBytes,
+                                bytes, isRetry, isFailure)))
+                .build();
+    }
+
+    private static long elapsedMillis(long start) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+}
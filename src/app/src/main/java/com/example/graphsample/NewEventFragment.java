@@ -9,6 +9,7 @@ import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.Button;
+import android.widget.TextView;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
@@ -20,12 +21,17 @@ import com.google.android.material.textfield.TextInputLayout;
 
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
+import java.util.List;
 import java.util.Objects;
 
 public class NewEventFragment extends Fragment {
     private static final String TIME_ZONE = "timeZone";
+    // Number of conflicting events listed before "and N more"
+    private static final int MAX_CONFLICTS_SHOWN = 3;
 
     private String mTimeZone;
+    private ZoneId mZoneId;
+    private EventIntervalIndex mIntervalIndex;
 
     private TextInputLayout mSubject;
     private TextInputLayout mAttendees;
@@ -34,6 +40,7 @@ public class NewEventFragment extends Fragment {
     private TextInputLayout mBody;
     private EditTextDateTimePicker mStartPicker;
     private EditTextDateTimePicker mEndPicker;
+    private TextView mConflicts;
 
     public NewEventFragment() {}
 
@@ -61,6 +68,7 @@ public class NewEventFragment extends Fragment {
         View newEventView = inflater.inflate(R.layout.fragment_new_event, container, false);
 
         ZoneId userTimeZone = GraphToIana.getZoneIdFromWindows(mTimeZone);
+        mZoneId = userTimeZone;
 
         mSubject = newEventView.findViewById(R.id.neweventsubject);
         mAttendees = newEventView.findViewById(R.id.neweventattendees);
@@ -76,6 +84,13 @@ public class NewEventFragment extends Fragment {
                 mEndInputLayout.getEditText(),
                 userTimeZone);
 
+        // Show the cached events the new event would overlap
+        // as soon as the start or end changes
+        mConflicts = newEventView.findViewById(R.id.neweventconflicts);
+        mStartPicker.setOnDateTimeChangedListener(dateTime -> showConflicts());
+        mEndPicker.setOnDateTimeChangedListener(dateTime -> showConflicts());
+        loadIntervalIndex();
+
         Button createButton = newEventView.findViewById(R.id.createevent);
         createButton.setOnClickListener(v -> {
             // Clear any errors
@@ -91,6 +106,52 @@ public class NewEventFragment extends Fragment {
     }
     // </OnCreateViewSnippet>
 
+    // Gets the index of the cached events, rebuilt if events
+    // have been loaded or created since it was last built
+    private void loadIntervalIndex() {
+        GraphHelper graphHelper = GraphHelper.getInstance();
+        graphHelper.getIntervalIndex()
+                .thenAcceptAsync(index -> {
+                    mIntervalIndex = index;
+                    showConflicts();
+                }, graphHelper.getExecutors().mainThread())
+                .exceptionally(exception -> {
+                    Log.e("GRAPH", "Error indexing cached events", exception);
+                    return null;
+                });
+    }
+
+    // Lists the cached events that overlap the selected times
+    // Only reads the in-memory index, so is quick enough to run
+    // on the main thread each time a picker changes
+    private void showConflicts() {
+        if (mIntervalIndex == null || getView() == null) {
+            return;
+        }
+
+        long start = mStartPicker.getZonedDateTime().toInstant().toEpochMilli();
+        long end = mEndPicker.getZonedDateTime().toInstant().toEpochMilli();
+        List<EventSummary> conflicts = mIntervalIndex.getOverlapping(start, end);
+        if (conflicts.isEmpty()) {
+            mConflicts.setVisibility(View.GONE);
+            return;
+        }
+
+        StringBuilder text = new StringBuilder(getString(R.string.event_conflicts));
+        for (int i = 0; i < conflicts.size() && i < MAX_CONFLICTS_SHOWN; i++) {
+            EventSummary conflict = conflicts.get(i);
+            text.append('\n').append(getString(R.string.event_conflict, conflict.getSubject(),
+                    EventDateFormatter.getLocalDateTimeString(conflict.getStart(), mZoneId)));
+        }
+        if (conflicts.size() > MAX_CONFLICTS_SHOWN) {
+            text.append('\n').append(getString(R.string.event_conflicts_more,
+                    conflicts.size() - MAX_CONFLICTS_SHOWN));
+        }
+
+        mConflicts.setText(text);
+        mConflicts.setVisibility(View.VISIBLE);
+    }
+
     // <CreateEventSnippet>
     private void createEvent() {
         String subject = Objects.requireNonNull(mSubject.getEditText()).getText().toString();
@@ -124,18 +185,32 @@ public class NewEventFragment extends Fragment {
                             endDateTime,
                             mTimeZone,
                             attendeeArray,
-                            body)
+                            body,
+                            true)
                     .thenAccept(newEvent -> {
                         hideProgressBar();
-                        Snackbar.make(requireView(),
-                                "Event created",
+                        // Queued events don't have an ID yet. Events are also
+                        // queued behind older ones, or when a request is lost
+                        String message = newEvent.id != null
+                                ? "Event created"
+                                : getString(OutboxSync.getInstance().isOnline()
+                                        ? R.string.event_queued_online
+                                        : R.string.event_queued);
+                        Snackbar.make(requireView(), message,
                                 BaseTransientBottomBar.LENGTH_SHORT).show();
+
+                        // The new event is a conflict for the next one
+                        if (newEvent.id != null) {
+                            loadIntervalIndex();
+                        }
                     })
                     .exceptionally(exception -> {
                         hideProgressBar();
                         Log.e("GRAPH", "Error creating event", exception);
                         Snackbar.make(requireView(),
-                                Objects.requireNonNull(exception.getMessage()),
+                                GraphHelper.isThrottled(exception)
+                                        ? getString(R.string.graph_busy)
+                                        : Objects.requireNonNull(exception.getMessage()),
                                 BaseTransientBottomBar.LENGTH_LONG).show();
                         return null;
                     });
@@ -0,0 +1,37 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT License.
+
+package com.example.graphsample;
+
+// The outcome of sending the outbox: the events Graph created, and
+// those it rejected, which are kept in the outbox as parked so the
+// user can be told they were not created
+public class OutboxSendResult {
+    public static final OutboxSendResult EMPTY = new OutboxSendResult(0, 0);
+
+    private final int mSentCount;
+    private final int mRejectedCount;
+
+    public OutboxSendResult(int sentCount, int rejectedCount) {
+        mSentCount = sentCount;
+        mRejectedCount = rejectedCount;
+    }
+
+    public int getSentCount() {
+        return mSentCount;
+    }
+
+    public int getRejectedCount() {
+        return mRejectedCount;
+    }
+
+    // True if no item left the queue
+    public boolean isEmpty() {
+        return mSentCount == 0 && mRejectedCount == 0;
+    }
+
+    public OutboxSendResult plus(OutboxSendResult other) {
+        return new OutboxSendResult(mSentCount + other.mSentCount,
+                mRejectedCount + other.mRejectedCount);
+    }
+}
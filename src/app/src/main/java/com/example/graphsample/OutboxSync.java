@@ -0,0 +1,145 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT License.
+
+package com.example.graphsample;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.util.Log;
+import android.widget.Toast;
+
+import androidx.annotation.NonNull;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+// Singleton class - sends the events queued in EventOutbox each time
+// the device gets a network connection
+// Started by MainActivity as soon as it knows of an account, from the
+// stored profile or a token, so a start while offline still listens
+// for the connection coming back. Also tells GraphHelper whether the
+// device is online, so events can be queued straight away instead of
+// waiting for a request to time out
+// While online, a send that leaves events queued, for example because
+// Graph failed to create one, is tried again after a delay that doubles
+// each time, until the events are sent or EventOutbox parks them
+public class OutboxSync extends ConnectivityManager.NetworkCallback {
+    private static final long INITIAL_RETRY_DELAY_MILLIS = TimeUnit.SECONDS.toMillis(30);
+    private static final long MAX_RETRY_DELAY_MILLIS = TimeUnit.MINUTES.toMillis(15);
+
+    private static OutboxSync INSTANCE = null;
+
+    private final Context mContext;
+    private final ConnectivityManager mConnectivityManager;
+    // Guarded by this
+    private boolean mIsStarted = false;
+    private ScheduledFuture<?> mRetry = null;
+    private long mRetryDelayMillis = INITIAL_RETRY_DELAY_MILLIS;
+
+    private OutboxSync(Context ctx) {
+        mContext = ctx;
+        mConnectivityManager = ctx.getSystemService(ConnectivityManager.class);
+    }
+
+    public static synchronized OutboxSync getInstance(Context ctx) {
+        if (INSTANCE == null) {
+            INSTANCE = new OutboxSync(ctx.getApplicationContext());
+        }
+
+        return INSTANCE;
+    }
+
+    // Version called from GraphHelper. Does not create an
+    // instance if one doesn't exist
+    public static synchronized OutboxSync getInstance() {
+        if (INSTANCE == null) {
+            throw new IllegalStateException(
+                    "OutboxSync has not been initialized from MainActivity");
+        }
+
+        return INSTANCE;
+    }
+
+    // Starts listening for connectivity, which also
+    // sends anything queued if the device is online
+    public synchronized void start() {
+        if (!mIsStarted) {
+            mIsStarted = true;
+            mConnectivityManager.registerDefaultNetworkCallback(this);
+        }
+    }
+
+    public synchronized void stop() {
+        if (mIsStarted) {
+            mIsStarted = false;
+            mConnectivityManager.unregisterNetworkCallback(this);
+        }
+        scheduleRetry(false);
+    }
+
+    // Read from the active network each time, so it is
+    // correct whether or not the callback is registered
+    public boolean isOnline() {
+        NetworkCapabilities capabilities = mConnectivityManager.getNetworkCapabilities(
+                mConnectivityManager.getActiveNetwork());
+        return capabilities != null &&
+                capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET);
+    }
+
+    // Sends the queued events if the device is online
+    public void requestSync() {
+        if (!isOnline()) {
+            return;
+        }
+
+        final GraphHelper graphHelper = GraphHelper.getInstance();
+        graphHelper.sendOutbox()
+                .thenAccept(result -> {
+                    if (result.getSentCount() > 0) {
+                        Log.d("GRAPH", "Sent " + result.getSentCount() + " queued events");
+                    }
+                    if (result.getRejectedCount() > 0) {
+                        showRejected(result.getRejectedCount());
+                    }
+                })
+                .exceptionally(exception -> {
+                    Log.w("GRAPH", "Unable to send queued events", exception);
+                    return null;
+                })
+                .thenRunAsync(() -> scheduleRetry(graphHelper.getPendingOutboxCount() > 0),
+                        graphHelper.getExecutors().parsing());
+    }
+
+    // Events queued offline were accepted with a message saying they
+    // would be created, so the user is told when Graph rejects them
+    private void showRejected(int count) {
+        GraphHelper.getInstance().getExecutors().mainThread().execute(() ->
+                Toast.makeText(mContext, mContext.getResources().getQuantityString(
+                        R.plurals.events_rejected, count, count), Toast.LENGTH_LONG).show());
+    }
+
+    // Sends again later if events are still queued, backing off each
+    // time, or resets the delay once everything has been sent
+    private synchronized void scheduleRetry(boolean hasPending) {
+        if (mRetry != null) {
+            mRetry.cancel(false);
+            mRetry = null;
+        }
+
+        if (!hasPending || !mIsStarted) {
+            mRetryDelayMillis = INITIAL_RETRY_DELAY_MILLIS;
+            return;
+        }
+
+        mRetry = GraphHelper.getInstance().getExecutors().scheduler()
+                .schedule(this::requestSync, mRetryDelayMillis, TimeUnit.MILLISECONDS);
+        mRetryDelayMillis = Math.min(mRetryDelayMillis * 2, MAX_RETRY_DELAY_MILLIS);
+    }
+
+    @Override
+    public void onAvailable(@NonNull Network network) {
+        requestSync();
+    }
+}
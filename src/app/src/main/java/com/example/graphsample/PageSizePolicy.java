@@ -0,0 +1,121 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT License.
+
+package com.example.graphsample;
+
+import androidx.annotation.NonNull;
+
+// Decides how many events to request per page from calendarView
+// and calendarView/delta
+// In FIXED mode the configured default is always used. In ADAPTIVE mode
+// the page size starts at the default and is doubled while pages come back
+// well within the target round trip time and payload budget, and halved
+// when a page takes longer than the target
+public class PageSizePolicy {
+    public enum Mode { FIXED, ADAPTIVE }
+
+    // Weight given to the newest sample in the moving averages
+    private static final double SMOOTHING = 0.3;
+
+    private Mode mMode = Mode.ADAPTIVE;
+    private int mDefaultPageSize = 25;
+    private int mMinPageSize = 10;
+    private int mMaxPageSize = 250;
+    private long mTargetRoundTripMillis = 1500;
+    private long mMaxPageBytes = 512 * 1024;
+
+    private int mPageSize = mDefaultPageSize;
+    private double mAverageItems = 0;
+    private double mAveragePageBytes = 0;
+
+    public synchronized Mode getMode() {
+        return mMode;
+    }
+
+    public synchronized void setMode(@NonNull Mode mode) {
+        mMode = mode;
+        mPageSize = mDefaultPageSize;
+    }
+
+    public synchronized void setDefaultPageSize(int pageSize) {
+        mDefaultPageSize = clamp(pageSize);
+        mPageSize = mDefaultPageSize;
+    }
+
+    public synchronized void setPageSizeLimits(int minPageSize, int maxPageSize) {
+        if (minPageSize < 1 || maxPageSize < minPageSize) {
+            throw new IllegalArgumentException("Invalid page size limits");
+        }
+
+        mMinPageSize = minPageSize;
+        mMaxPageSize = maxPageSize;
+        mDefaultPageSize = clamp(mDefaultPageSize);
+        mPageSize = clamp(mPageSize);
+    }
+
+    public synchronized void setTargetRoundTripMillis(long targetRoundTripMillis) {
+        mTargetRoundTripMillis = targetRoundTripMillis;
+    }
+
+    public synchronized void setMaxPageBytes(long maxPageBytes) {
+        mMaxPageBytes = maxPageBytes;
+    }
+
+    // The number of events to request in the next page
+    public synchronized int getPageSize() {
+        return mMode == Mode.FIXED ? mDefaultPageSize : mPageSize;
+    }
+
+    // Value for a Prefer header asking Graph for the current page size
+    @NonNull
+    public String getPreferHeaderValue() {
+        return "odata.maxpagesize=" + getPageSize();
+    }
+
+    // Called when a page of results has been received, with the number of
+    // items on the page and the time between sending the request and
+    // having the page deserialized
+    public synchronized void recordPage(int itemCount, long roundTripMillis) {
+        mAverageItems = average(mAverageItems, itemCount);
+
+        if (mMode == Mode.FIXED) {
+            return;
+        }
+
+        if (roundTripMillis > mTargetRoundTripMillis) {
+            mPageSize = clamp(mPageSize / 2);
+        } else if (itemCount >= mPageSize &&
+                roundTripMillis < mTargetRoundTripMillis / 2 &&
+                getEstimatedBytes(mPageSize * 2) <= mMaxPageBytes) {
+            // Only grow when the page was full, a partial page
+            // says nothing about how a larger page would behave
+            mPageSize = clamp(mPageSize * 2);
+        }
+    }
+
+    // Called with the decoded size of each calendar response body
+    public synchronized void recordPayloadBytes(long bytes) {
+        if (bytes >= 0) {
+            mAveragePageBytes = average(mAveragePageBytes, bytes);
+        }
+    }
+
+    // Estimates the payload of a page with the given number of items
+    // from the average page size seen so far. Returns 0 until both
+    // item counts and payload sizes have been recorded
+    private double getEstimatedBytes(int itemCount) {
+        if (mAverageItems <= 0 || mAveragePageBytes <= 0) {
+            return 0;
+        }
+
+        return mAveragePageBytes / mAverageItems * itemCount;
+    }
+
+    private int clamp(int pageSize) {
+        return Math.max(mMinPageSize, Math.min(mMaxPageSize, pageSize));
+    }
+
+    private static double average(double current, double sample) {
+        return current <= 0 ? sample : current + SMOOTHING * (sample - current);
+    }
+}
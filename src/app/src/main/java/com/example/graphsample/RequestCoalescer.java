@@ -0,0 +1,87 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT License.
+
+package com.example.graphsample;
+
+import androidx.annotation.NonNull;
+
+import com.microsoft.graph.http.IHttpRequest;
+import com.microsoft.graph.options.HeaderOption;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+// Shares a single in-flight request between callers that make
+// the same request at the same time
+// The first caller for a key starts the request, callers arriving
+// before it completes get a future for the same result
+public class RequestCoalescer {
+    private final ConcurrentHashMap<String, CompletableFuture<?>> mInFlight =
+            new ConcurrentHashMap<>();
+    private final AtomicLong mCoalescedCount = new AtomicLong();
+
+    // Headers that are different for every request, or that
+    // don't change the response, are left out of the key
+    private static final List<String> IGNORED_HEADERS = Collections.unmodifiableList(
+            Arrays.asList("authorization", "client-request-id", "sdkversion"));
+
+    @SuppressWarnings("unchecked")
+    public <T> CompletableFuture<T> coalesce(@NonNull String key,
+                                             @NonNull Supplier<CompletableFuture<T>> request) {
+        final CompletableFuture<T> shared = new CompletableFuture<>();
+        final CompletableFuture<?> existing = mInFlight.putIfAbsent(key, shared);
+
+        if (existing != null) {
+            mCoalescedCount.incrementAndGet();
+            return ((CompletableFuture<T>) existing).thenApply(value -> value);
+        }
+
+        try {
+            request.get().whenComplete((value, exception) -> {
+                // Remove before completing so callers reacting to the result
+                // can start a new request for the same key
+                mInFlight.remove(key, shared);
+                if (exception != null) {
+                    shared.completeExceptionally(exception);
+                } else {
+                    shared.complete(value);
+                }
+            });
+        } catch (RuntimeException exception) {
+            mInFlight.remove(key, shared);
+            shared.completeExceptionally(exception);
+        }
+
+        // Each caller gets its own dependent future so cancelling
+        // one doesn't cancel the request for everyone
+        return shared.thenApply(value -> value);
+    }
+
+    // The number of calls that joined a request already in flight
+    public long getCoalescedCount() {
+        return mCoalescedCount.get();
+    }
+
+    // Builds a key from the request's method, URL (including
+    // query options) and the headers that affect the response
+    @NonNull
+    public static String getKey(@NonNull IHttpRequest request) {
+        List<String> headers = new ArrayList<>();
+        for (HeaderOption header : request.getHeaders()) {
+            String name = header.getName().toLowerCase(Locale.ROOT);
+            if (!IGNORED_HEADERS.contains(name)) {
+                headers.add(name + ":" + header.getValue());
+            }
+        }
+        Collections.sort(headers);
+
+        return request.getHttpMethod() + " " + request.getRequestUrl() + " " + headers;
+    }
+}
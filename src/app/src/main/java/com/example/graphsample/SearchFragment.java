@@ -0,0 +1,110 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT License.
+
+package com.example.graphsample;
+
+import android.os.Bundle;
+import android.text.Editable;
+import android.text.TextWatcher;
+import android.util.Log;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.EditText;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.core.content.ContextCompat;
+import androidx.fragment.app.Fragment;
+import androidx.recyclerview.widget.DividerItemDecoration;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.google.android.material.textfield.TextInputLayout;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+
+// Searches the events in GraphHelper's search index as the user types
+// No requests are made, so it also works offline
+public class SearchFragment extends Fragment {
+    // Results shown for a query
+    private static final int MAX_RESULTS = 100;
+
+    private CompletableFuture<EventSearchIndex> mSearchIndex = null;
+    private EventListAdapter mListAdapter = null;
+    private TextView mEmptyView = null;
+    // Incremented for each query, so results of a query the
+    // user has typed past are dropped
+    private int mQueryCount = 0;
+
+    public SearchFragment() {}
+
+    @Nullable
+    @Override
+    public View onCreateView(@NonNull LayoutInflater inflater, @Nullable ViewGroup container, @Nullable Bundle savedInstanceState) {
+        View view = inflater.inflate(R.layout.fragment_search, container, false);
+
+        final GraphHelper graphHelper = GraphHelper.getInstance();
+
+        // Loads the stored events into the index the first time
+        mSearchIndex = graphHelper.getSearchIndex();
+
+        RecyclerView resultsView = view.findViewById(R.id.searchresults);
+        resultsView.setLayoutManager(new LinearLayoutManager(requireContext()));
+        DividerItemDecoration divider = new DividerItemDecoration(requireContext(),
+                DividerItemDecoration.VERTICAL);
+        divider.setDrawable(Objects.requireNonNull(
+                ContextCompat.getDrawable(requireContext(), R.drawable.event_list_divider)));
+        resultsView.addItemDecoration(divider);
+        mListAdapter = new EventListAdapter(graphHelper.getExecutors().parsing());
+        resultsView.setAdapter(mListAdapter);
+
+        mEmptyView = view.findViewById(R.id.searchempty);
+
+        TextInputLayout queryLayout = view.findViewById(R.id.searchquery);
+        EditText queryText = Objects.requireNonNull(queryLayout.getEditText());
+        queryText.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {}
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {}
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                search(s.toString());
+            }
+        });
+
+        return view;
+    }
+
+    // Searches on the parsing pool, and formats the
+    // rows there too, then shows them on the main thread
+    private void search(final String query) {
+        final int queryNumber = ++mQueryCount;
+        final GraphExecutors executors = GraphHelper.getInstance().getExecutors();
+
+        mSearchIndex
+                .thenApplyAsync(index -> {
+                    List<EventSummary> results = index.search(query, MAX_RESULTS);
+                    return EventDisplayRow.fromSummaries(results);
+                }, executors.parsing())
+                .thenAcceptAsync(rows -> {
+                    if (queryNumber != mQueryCount || getView() == null) {
+                        return;
+                    }
+
+                    mListAdapter.submitList(rows);
+                    mEmptyView.setVisibility(rows.isEmpty() && !query.trim().isEmpty()
+                            ? View.VISIBLE : View.GONE);
+                }, executors.mainThread())
+                .exceptionally(exception -> {
+                    Log.e("GRAPH", "Error searching events", exception);
+                    return null;
+                });
+    }
+}
@@ -0,0 +1,55 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT License.
+
+package com.example.graphsample;
+
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.io.PrintWriter;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+// Singleton class - records when each phase of app startup finished,
+// in milliseconds since the process started
+// Only the first time a phase is marked is kept, so phases that also
+// happen later (for example getting the user after a new sign in)
+// don't overwrite the startup timings
+public class StartupTracer {
+    private static StartupTracer INSTANCE = null;
+
+    private final long mProcessStart = Process.getStartElapsedRealtime();
+    private final Map<String, Long> mPhases = new LinkedHashMap<>();
+
+    private StartupTracer() {}
+
+    public static synchronized StartupTracer getInstance() {
+        if (INSTANCE == null) {
+            INSTANCE = new StartupTracer();
+        }
+
+        return INSTANCE;
+    }
+
+    // Records the end of a phase, can be called from any thread
+    public synchronized void mark(@NonNull String phase) {
+        if (!mPhases.containsKey(phase)) {
+            long elapsed = SystemClock.elapsedRealtime() - mProcessStart;
+            mPhases.put(phase, elapsed);
+            Log.d("STARTUP", String.format(Locale.ROOT, "%s: %dms", phase, elapsed));
+        }
+    }
+
+    public synchronized void dump(@NonNull String prefix, @NonNull PrintWriter writer) {
+        writer.print(prefix);
+        writer.print("Startup:");
+        for (Map.Entry<String, Long> phase : mPhases.entrySet()) {
+            writer.print(String.format(Locale.ROOT, " %s=%dms", phase.getKey(), phase.getValue()));
+        }
+        writer.println();
+    }
+}
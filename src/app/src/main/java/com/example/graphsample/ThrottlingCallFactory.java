@@ -0,0 +1,403 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT License.
+
+package com.example.graphsample;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.microsoft.graph.authentication.IAuthenticationProvider;
+import com.microsoft.graph.httpcore.AuthenticationHandler;
+import com.microsoft.graph.httpcore.HttpClients;
+import com.microsoft.graph.httpcore.RedirectHandler;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okio.Timeout;
+
+// Creates the Graph client's calls, retrying requests that were
+// throttled (429) or found the service unavailable (503, or 504 for
+// GET requests)
+// Each retry waits for the Retry-After time when Graph sends one, and
+// otherwise backs off exponentially with jitter. Once the waits for a
+// request would go over its retry budget, the last response is
+// returned to the caller as is
+// Every attempt also takes a token from a bucket shared by all requests,
+// and a Retry-After pauses the bucket, so when Graph throttles one
+// request the others back off with it instead of adding to the load
+// Waits are scheduled rather than slept through: each attempt is a new
+// call on the client, enqueued once its wait is over, so a throttled
+// request doesn't hold one of the network threads while it waits
+// Used in place of the Graph SDK's retry handler, see createClientBuilder
+public class ThrottlingCallFactory implements Call.Factory {
+    // Same header as the Graph SDK's retry handler, counted
+    // as a retry by MetricsInterceptor
+    public static final String RETRY_ATTEMPT_HEADER = "Retry-Attempt";
+    private static final String RETRY_AFTER_HEADER = "Retry-After";
+
+    private static final int DEFAULT_MAX_RETRIES = 4;
+    private static final long DEFAULT_BASE_DELAY_MILLIS = 500;
+    private static final long DEFAULT_MAX_DELAY_MILLIS = TimeUnit.SECONDS.toMillis(16);
+    private static final long DEFAULT_BUDGET_MILLIS = TimeUnit.SECONDS.toMillis(40);
+
+    // Graph allows bursts, but limits the rate per app and mailbox
+    // over time, so the bucket allows short bursts at a steady rate
+    private static final int DEFAULT_BUCKET_CAPACITY = 16;
+    private static final double DEFAULT_TOKENS_PER_SECOND = 8;
+
+    private final OkHttpClient mClient;
+    private final ScheduledExecutorService mScheduler;
+    private final TokenBucket mBucket;
+    private final int mMaxRetries;
+    private final long mBaseDelayMillis;
+    private final long mMaxDelayMillis;
+    private final long mBudgetMillis;
+
+    private final AtomicLong mThrottledResponses = new AtomicLong();
+    private final AtomicLong mRetries = new AtomicLong();
+    private final AtomicLong mExhaustedBudgets = new AtomicLong();
+
+    public ThrottlingCallFactory(@NonNull OkHttpClient client,
+                                 @NonNull ScheduledExecutorService scheduler,
+                                 @NonNull TokenBucket bucket, int maxRetries,
+                                 long baseDelayMillis, long maxDelayMillis, long budgetMillis) {
+        mClient = client;
+        mScheduler = scheduler;
+        mBucket = bucket;
+        mMaxRetries = maxRetries;
+        mBaseDelayMillis = baseDelayMillis;
+        mMaxDelayMillis = maxDelayMillis;
+        mBudgetMillis = budgetMillis;
+    }
+
+    // Version with the default retry budget and rate
+    @NonNull
+    public static ThrottlingCallFactory create(@NonNull OkHttpClient client,
+                                               @NonNull ScheduledExecutorService scheduler) {
+        return new ThrottlingCallFactory(client, scheduler,
+                new TokenBucket(DEFAULT_BUCKET_CAPACITY, DEFAULT_TOKENS_PER_SECOND),
+                DEFAULT_MAX_RETRIES, DEFAULT_BASE_DELAY_MILLIS, DEFAULT_MAX_DELAY_MILLIS,
+                DEFAULT_BUDGET_MILLIS);
+    }
+
+    // The handlers of HttpClients.createDefault without the retry
+    // handler, as retries are made by this factory
+    @NonNull
+    public static OkHttpClient.Builder createClientBuilder(
+            @NonNull IAuthenticationProvider authProvider) {
+        return HttpClients.createFromInterceptors(new Interceptor[] {
+                new AuthenticationHandler(authProvider),
+                new RedirectHandler()
+        }).newBuilder();
+    }
+
+    @NonNull
+    @Override
+    public Call newCall(@NonNull Request request) {
+        return new ThrottledCall(request);
+    }
+
+    // Number of 429 and 503 responses seen, including the last
+    // response of requests that ran out of retries
+    public long getThrottledCount() {
+        return mThrottledResponses.get();
+    }
+
+    public long getRetryCount() {
+        return mRetries.get();
+    }
+
+    // Requests that were still throttled when their retries ran out
+    public long getExhaustedCount() {
+        return mExhaustedBudgets.get();
+    }
+
+    public double getAvailableTokens() {
+        return mBucket.getAvailableTokens();
+    }
+
+    // How long to wait before sending a failed request of a JSON batch
+    // again, or -1 if it shouldn't be. These are counted, and their
+    // Retry-After pauses the bucket, like requests sent on their own
+    long getStepRetryDelay(int status, @NonNull String method, @Nullable String retryAfter,
+                           int attempt, long waitedMillis) {
+        if (!isRetryable(status, method)) {
+            return -1;
+        }
+
+        return getRetryDelay(retryAfter, attempt, waitedMillis, false);
+    }
+
+    // How long to wait before sending the request again,
+    // or -1 if the response should go to the caller
+    private long getRetryDelay(Request request, Response response, int attempt,
+                               long waitedMillis, boolean canceled) {
+        RequestBody body = request.body();
+        if ((body != null && body.isOneShot()) ||
+                !isRetryable(response.code(), request.method())) {
+            return -1;
+        }
+
+        return getRetryDelay(response.header(RETRY_AFTER_HEADER), attempt, waitedMillis,
+                canceled);
+    }
+
+    private long getRetryDelay(@Nullable String retryAfterHeader, int attempt,
+                               long waitedMillis, boolean canceled) {
+        mThrottledResponses.incrementAndGet();
+        long retryAfter = getRetryAfterMillis(retryAfterHeader, System.currentTimeMillis());
+        if (retryAfter >= 0) {
+            mBucket.pause(retryAfter);
+        }
+
+        long delay = retryAfter >= 0 ? retryAfter : getBackoffMillis(attempt);
+        if (attempt >= mMaxRetries || waitedMillis + delay > mBudgetMillis || canceled) {
+            mExhaustedBudgets.incrementAndGet();
+            return -1;
+        }
+
+        mRetries.incrementAndGet();
+        return delay;
+    }
+
+    // Timeouts are only retried for reads. Requests with a body that
+    // can only be sent once aren't retried at all
+    private static boolean isRetryable(int code, String method) {
+        return code == 429 || code == 503 || (code == 504 && "GET".equals(method));
+    }
+
+    // Exponential backoff with jitter, between half and all of
+    // the base delay doubled for each attempt
+    private long getBackoffMillis(int attempt) {
+        long delay = Math.min(mBaseDelayMillis << Math.min(attempt, 20), mMaxDelayMillis);
+        return delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+    }
+
+    // Returns the delay in a Retry-After header, which is either a number
+    // of seconds or an HTTP date, or -1 if there is no valid delay
+    static long getRetryAfterMillis(@Nullable String value, long nowMillis) {
+        if (value == null || value.trim().isEmpty()) {
+            return -1;
+        }
+
+        try {
+            long seconds = Long.parseLong(value.trim());
+            return seconds < 0 ? -1 : TimeUnit.SECONDS.toMillis(seconds);
+        } catch (NumberFormatException exception) {
+            // Not a number of seconds, try a date
+        }
+
+        try {
+            Instant retryAt = ZonedDateTime.parse(value.trim(),
+                    DateTimeFormatter.RFC_1123_DATE_TIME).toInstant();
+            return Math.max(0, retryAt.toEpochMilli() - nowMillis);
+        } catch (DateTimeParseException exception) {
+            return -1;
+        }
+    }
+
+    // A request sent as one or more calls on the client. Enqueued
+    // requests wait on the scheduler, executed ones on the calling
+    // thread, which isn't one of the client's
+    private class ThrottledCall implements Call {
+        private final Request mRequest;
+        private final AtomicBoolean mExecuted = new AtomicBoolean(false);
+        private Callback mCallback = null;
+        // The attempt in flight, the next one if it is waiting,
+        // and whether the call was canceled. Guarded by this
+        private Call mAttempt = null;
+        private ScheduledFuture<?> mScheduled = null;
+        private boolean mCanceled = false;
+
+        ThrottledCall(Request request) {
+            mRequest = request;
+        }
+
+        @NonNull
+        @Override
+        public Request request() {
+            return mRequest;
+        }
+
+        @NonNull
+        @Override
+        public Response execute() throws IOException {
+            markExecuted();
+            long waitedMillis = 0;
+            for (int attempt = 0; ; attempt++) {
+                sleep(mBucket.acquire());
+
+                Response response = newAttempt(attempt).execute();
+                long delay = getRetryDelay(mRequest, response, attempt, waitedMillis,
+                        isCanceled());
+                if (delay < 0) {
+                    return response;
+                }
+
+                response.close();
+                sleep(delay);
+                waitedMillis += delay;
+            }
+        }
+
+        @Override
+        public void enqueue(@NonNull Callback callback) {
+            markExecuted();
+            mCallback = callback;
+            sendAfter(mBucket.acquire(), 0, 0);
+        }
+
+        @Override
+        public void cancel() {
+            Call attempt;
+            ScheduledFuture<?> scheduled;
+            synchronized (this) {
+                if (mCanceled) {
+                    return;
+                }
+                mCanceled = true;
+                attempt = mAttempt;
+                scheduled = mScheduled;
+            }
+
+            // A call in flight reports its own failure, a waiting
+            // one is failed here instead of being sent
+            if (attempt != null) {
+                attempt.cancel();
+            }
+            if (scheduled != null && scheduled.cancel(false)) {
+                mScheduler.execute(this::failCanceled);
+            }
+        }
+
+        @Override
+        public boolean isExecuted() {
+            return mExecuted.get();
+        }
+
+        @Override
+        public synchronized boolean isCanceled() {
+            return mCanceled;
+        }
+
+        // Each attempt has the client's own call timeout
+        @NonNull
+        @Override
+        public Timeout timeout() {
+            return Timeout.NONE;
+        }
+
+        @NonNull
+        @Override
+        public Call clone() {
+            return new ThrottledCall(mRequest);
+        }
+
+        private void markExecuted() {
+            if (!mExecuted.compareAndSet(false, true)) {
+                throw new IllegalStateException("Already Executed");
+            }
+        }
+
+        private synchronized Call newAttempt(int attempt) throws IOException {
+            if (mCanceled) {
+                throw new IOException("Canceled");
+            }
+
+            Request request = attempt == 0 ? mRequest : mRequest.newBuilder()
+                    .header(RETRY_ATTEMPT_HEADER, String.valueOf(attempt))
+                    .build();
+            mAttempt = mClient.newCall(request);
+            return mAttempt;
+        }
+
+        // Sends the attempt once the delay is over, taking
+        // no thread while it waits
+        private synchronized void sendAfter(long delayMillis, int attempt, long waitedMillis) {
+            if (mCanceled) {
+                mScheduler.execute(this::failCanceled);
+            } else if (delayMillis <= 0) {
+                send(attempt, waitedMillis);
+            } else {
+                mScheduled = mScheduler.schedule(() -> send(attempt, waitedMillis),
+                        delayMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        private void send(final int attempt, final long waitedMillis) {
+            Call call;
+            try {
+                call = newAttempt(attempt);
+            } catch (IOException exception) {
+                mCallback.onFailure(this, exception);
+                return;
+            }
+
+            call.enqueue(new Callback() {
+                @Override
+                public void onFailure(@NonNull Call call, @NonNull IOException exception) {
+                    mCallback.onFailure(ThrottledCall.this, exception);
+                }
+
+                @Override
+                public void onResponse(@NonNull Call call, @NonNull Response response)
+                        throws IOException {
+                    long delay = getRetryDelay(mRequest, response, attempt, waitedMillis,
+                            isCanceled());
+                    if (delay < 0) {
+                        mCallback.onResponse(ThrottledCall.this, response);
+                        return;
+                    }
+
+                    response.close();
+                    // The next attempt takes a token once the delay is over
+                    synchronized (ThrottledCall.this) {
+                        if (mCanceled) {
+                            mScheduler.execute(ThrottledCall.this::failCanceled);
+                            return;
+                        }
+                        mScheduled = mScheduler.schedule(
+                                () -> sendAfter(mBucket.acquire(), attempt + 1,
+                                        waitedMillis + delay),
+                                delay, TimeUnit.MILLISECONDS);
+                    }
+                }
+            });
+        }
+
+        private void failCanceled() {
+            mCallback.onFailure(this, new IOException("Canceled"));
+        }
+
+        private void sleep(long millis) throws IOException {
+            if (millis <= 0) {
+                return;
+            }
+
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting to retry");
+            }
+        }
+    }
+}
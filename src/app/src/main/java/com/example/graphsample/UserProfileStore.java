@@ -0,0 +1,137 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT License.
+
+package com.example.graphsample;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.Objects;
+
+// Singleton class - keeps the signed-in user's profile on the device
+// so MainActivity can show the user at startup, before MSAL and
+// Graph have been reached. The profile is saved after each
+// successful /me request and removed on sign out
+public class UserProfileStore {
+    private static final String PREFERENCES_NAME = "user_profile";
+    private static final String KEY_ACCOUNT_ID = "accountId";
+    private static final String KEY_NAME = "name";
+    private static final String KEY_EMAIL = "email";
+    private static final String KEY_TIME_ZONE = "timeZone";
+
+    private static UserProfileStore INSTANCE = null;
+    private final SharedPreferences mPreferences;
+
+    // Immutable copy of the stored values
+    public static final class Profile {
+        private final String mAccountId;
+        private final String mName;
+        private final String mEmail;
+        private final String mTimeZone;
+
+        public Profile(@Nullable String accountId, @Nullable String name,
+                       @Nullable String email, @Nullable String timeZone) {
+            mAccountId = accountId;
+            mName = name;
+            mEmail = email;
+            mTimeZone = timeZone;
+        }
+
+        @Nullable
+        public String getAccountId() {
+            return mAccountId;
+        }
+
+        @Nullable
+        public String getName() {
+            return mName;
+        }
+
+        @Nullable
+        public String getEmail() {
+            return mEmail;
+        }
+
+        @Nullable
+        public String getTimeZone() {
+            return mTimeZone;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) {
+                return true;
+            }
+            if (!(other instanceof Profile)) {
+                return false;
+            }
+
+            Profile profile = (Profile) other;
+            return Objects.equals(mAccountId, profile.mAccountId) &&
+                    Objects.equals(mName, profile.mName) &&
+                    Objects.equals(mEmail, profile.mEmail) &&
+                    Objects.equals(mTimeZone, profile.mTimeZone);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(mAccountId, mName, mEmail, mTimeZone);
+        }
+    }
+
+    private UserProfileStore(Context ctx) {
+        mPreferences = ctx.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+    }
+
+    public static synchronized UserProfileStore getInstance(Context ctx) {
+        if (INSTANCE == null) {
+            INSTANCE = new UserProfileStore(ctx.getApplicationContext());
+        }
+
+        return INSTANCE;
+    }
+
+    // Version called after initialization. Does not create an
+    // instance if one doesn't exist
+    public static synchronized UserProfileStore getInstance() {
+        if (INSTANCE == null) {
+            throw new IllegalStateException(
+                    "UserProfileStore has not been initialized from MainActivity");
+        }
+
+        return INSTANCE;
+    }
+
+    // Returns the stored profile, or null if no user is stored
+    // The first call reads the preferences file, so this
+    // shouldn't be called on the main thread
+    @Nullable
+    public Profile load() {
+        String accountId = mPreferences.getString(KEY_ACCOUNT_ID, null);
+        if (accountId == null) {
+            return null;
+        }
+
+        return new Profile(accountId,
+                mPreferences.getString(KEY_NAME, null),
+                mPreferences.getString(KEY_EMAIL, null),
+                mPreferences.getString(KEY_TIME_ZONE, null));
+    }
+
+    // Saves the profile, writing to disk in the background
+    public void save(@NonNull Profile profile) {
+        mPreferences.edit()
+                .putString(KEY_ACCOUNT_ID, profile.getAccountId())
+                .putString(KEY_NAME, profile.getName())
+                .putString(KEY_EMAIL, profile.getEmail())
+                .putString(KEY_TIME_ZONE, profile.getTimeZone())
+                .apply();
+    }
+
+    public void clear() {
+        mPreferences.edit().clear().apply();
+    }
+}
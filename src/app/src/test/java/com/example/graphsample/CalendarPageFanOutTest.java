@@ -0,0 +1,81 @@
+package com.example.graphsample;
+
+import org.junit.Test;
+
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class CalendarPageFanOutTest {
+    private static List<EventSummary> createPage(String id) {
+        return Collections.singletonList(new EventSummary(id, null, id, "", 0, 0,
+                ZoneId.of("UTC")));
+    }
+
+    @Test
+    public void addListener_replaysDeliveredPages() {
+        CalendarPageFanOut fanOut = new CalendarPageFanOut();
+        List<String> first = new ArrayList<>();
+        List<String> joined = new ArrayList<>();
+
+        fanOut.addListener(page -> first.add(page.get(0).getId()));
+        fanOut.onPage(createPage("a"));
+        fanOut.addListener(page -> joined.add(page.get(0).getId()));
+        fanOut.onPage(createPage("b"));
+
+        assertEquals("[a, b]", first.toString());
+        assertEquals("[a, b]", joined.toString());
+    }
+
+    @Test
+    public void onPage_listenerThrows_othersReceiveEveryPage() {
+        CalendarPageFanOut fanOut = new CalendarPageFanOut();
+        List<String> before = new ArrayList<>();
+        List<String> after = new ArrayList<>();
+
+        fanOut.addListener(page -> before.add(page.get(0).getId()));
+        fanOut.addListener(page -> {
+            throw new IllegalStateException("Fragment not attached");
+        });
+        fanOut.addListener(page -> after.add(page.get(0).getId()));
+        fanOut.onPage(createPage("a"));
+        fanOut.onPage(createPage("b"));
+
+        assertEquals("[a, b]", before.toString());
+        assertEquals("[a, b]", after.toString());
+    }
+
+    @Test
+    public void addListener_replayThrows_listenerStillAdded() {
+        CalendarPageFanOut fanOut = new CalendarPageFanOut();
+        List<String> received = new ArrayList<>();
+
+        fanOut.onPage(createPage("a"));
+        fanOut.addListener(page -> {
+            received.add(page.get(0).getId());
+            if (received.size() == 1) {
+                throw new IllegalStateException("First page failed");
+            }
+        });
+        fanOut.onPage(createPage("b"));
+
+        assertEquals("[a, b]", received.toString());
+    }
+
+    @Test
+    public void removeListener_stopsDelivery() {
+        CalendarPageFanOut fanOut = new CalendarPageFanOut();
+        List<String> received = new ArrayList<>();
+        ICalendarPageListener listener = page -> received.add(page.get(0).getId());
+
+        fanOut.addListener(listener);
+        fanOut.onPage(createPage("a"));
+        fanOut.removeListener(listener);
+        fanOut.onPage(createPage("b"));
+
+        assertEquals("[a]", received.toString());
+    }
+}
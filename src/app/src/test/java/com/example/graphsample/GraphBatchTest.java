@@ -0,0 +1,298 @@
+package com.example.graphsample;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.microsoft.graph.http.HttpMethod;
+import com.microsoft.graph.models.User;
+import com.microsoft.graph.requests.GraphServiceClient;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import okhttp3.Call;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+
+import static org.junit.Assert.*;
+
+public class GraphBatchTest {
+    private static final MediaType JSON = MediaType.get("application/json");
+
+    private ScheduledExecutorService mScheduler;
+    private ThrottlingCallFactory mThrottling;
+    private GraphServiceClient<Request> mClient;
+
+    // Requests of each batch received, in the order they arrived
+    private final List<JsonArray> mBatches = Collections.synchronizedList(new ArrayList<>());
+    // Answers the requests of a batch, by default each
+    // with a user named after the request's URL
+    private volatile Function<JsonArray, JsonArray> mResponder = GraphBatchTest::answerAll;
+    private volatile Runnable mOnBatch = () -> {};
+    private volatile boolean mOffline = false;
+
+    @Before
+    public void setUp() {
+        mScheduler = Executors.newSingleThreadScheduledExecutor();
+
+        // Stands in for Graph's /$batch endpoint without a network
+        OkHttpClient httpClient = new OkHttpClient.Builder()
+                .addInterceptor(chain -> {
+                    Request request = chain.request();
+                    if (mOffline) {
+                        throw new IOException("Connection reset");
+                    }
+
+                    Buffer buffer = new Buffer();
+                    request.body().writeTo(buffer);
+                    JsonArray requests = JsonParser.parseString(buffer.readUtf8())
+                            .getAsJsonObject().getAsJsonArray("requests");
+                    mBatches.add(requests);
+                    mOnBatch.run();
+
+                    JsonObject body = new JsonObject();
+                    body.add("responses", mResponder.apply(requests));
+                    return new Response.Builder()
+                            .request(request)
+                            .protocol(Protocol.HTTP_1_1)
+                            .code(200)
+                            .message("OK")
+                            .body(ResponseBody.create(body.toString(), JSON))
+                            .build();
+                })
+                .build();
+
+        mThrottling = ThrottlingCallFactory.create(httpClient, mScheduler);
+        mClient = GraphServiceClient.builder(Call.Factory.class, Request.class)
+                .authenticationProvider(url -> CompletableFuture.completedFuture(null))
+                .httpClient(mThrottling)
+                .buildClient();
+    }
+
+    @After
+    public void tearDown() {
+        mScheduler.shutdownNow();
+    }
+
+    private static JsonObject createResponse(JsonObject request, int status, JsonObject body) {
+        JsonObject response = new JsonObject();
+        response.addProperty("id", request.get("id").getAsString());
+        response.addProperty("status", status);
+        response.add("headers", new JsonObject());
+        if (body != null) {
+            response.add("body", body);
+        }
+        return response;
+    }
+
+    private static JsonObject createUser(JsonObject request) {
+        JsonObject user = new JsonObject();
+        user.addProperty("displayName", request.get("url").getAsString());
+        return user;
+    }
+
+    private static JsonArray answerAll(JsonArray requests) {
+        JsonArray responses = new JsonArray();
+        for (JsonElement request : requests) {
+            responses.add(createResponse(request.getAsJsonObject(), 200,
+                    createUser(request.getAsJsonObject())));
+        }
+        return responses;
+    }
+
+    private GraphBatch createBatch() {
+        return new GraphBatch(mClient, mThrottling, mScheduler);
+    }
+
+    private CompletableFuture<User> addUser(GraphBatch batch, String id,
+                                            CompletableFuture<?>... dependsOn) {
+        return batch.add(mClient.users(id).buildRequest(), HttpMethod.GET, null,
+                User.class, dependsOn);
+    }
+
+    private static <T> T await(CompletableFuture<T> future) throws Exception {
+        return future.get(5, TimeUnit.SECONDS);
+    }
+
+    private static Throwable awaitFailure(CompletableFuture<?> future) throws Exception {
+        try {
+            await(future);
+        } catch (ExecutionException exception) {
+            return exception.getCause();
+        }
+        fail("Expected the request to fail");
+        return null;
+    }
+
+    @Test
+    public void execute_splitsIntoBatchesOfTwenty() throws Exception {
+        GraphBatch batch = createBatch();
+        List<CompletableFuture<User>> users = new ArrayList<>();
+        for (int i = 0; i < 45; i++) {
+            users.add(addUser(batch, "user" + i));
+        }
+
+        await(batch.execute(3));
+
+        assertEquals(3, mBatches.size());
+        int steps = 0;
+        for (JsonArray requests : mBatches) {
+            assertTrue(requests.size() <= GraphBatch.MAX_BATCH_SIZE);
+            steps += requests.size();
+        }
+        assertEquals(45, steps);
+        for (int i = 0; i < users.size(); i++) {
+            assertEquals("/users/user" + i, users.get(i).get().displayName);
+        }
+    }
+
+    @Test
+    public void execute_dependencyInEarlierBatch_waitsForIt() throws Exception {
+        GraphBatch batch = createBatch();
+        CompletableFuture<User> first = addUser(batch, "first");
+        for (int i = 1; i < GraphBatch.MAX_BATCH_SIZE; i++) {
+            addUser(batch, "user" + i);
+        }
+        CompletableFuture<User> dependent = addUser(batch, "dependent", first);
+
+        // The second batch must only be sent once the first is resolved
+        List<Boolean> firstDoneWhenSent = Collections.synchronizedList(new ArrayList<>());
+        mOnBatch = () -> firstDoneWhenSent.add(first.isDone());
+
+        await(batch.execute(2));
+
+        assertEquals("[false, true]", firstDoneWhenSent.toString());
+        // Graph can't see steps in other batches, so none are referenced
+        assertFalse(mBatches.get(1).get(0).getAsJsonObject().has("dependsOn"));
+        assertEquals("/users/dependent", dependent.get().displayName);
+    }
+
+    @Test
+    public void execute_dependencyInSameBatch_sentWithDependsOn() throws Exception {
+        GraphBatch batch = createBatch();
+        CompletableFuture<User> first = addUser(batch, "first");
+        addUser(batch, "second", first);
+
+        await(batch.execute());
+
+        JsonArray requests = mBatches.get(0);
+        String firstId = requests.get(0).getAsJsonObject().get("id").getAsString();
+        JsonArray dependsOn = requests.get(1).getAsJsonObject().getAsJsonArray("dependsOn");
+        assertEquals(1, dependsOn.size());
+        assertEquals(firstId, dependsOn.get(0).getAsString());
+    }
+
+    @Test
+    public void execute_throttledStep_retriedWithItsDependents() throws Exception {
+        GraphBatch batch = createBatch();
+        CompletableFuture<User> throttled = addUser(batch, "throttled");
+        CompletableFuture<User> dependent = addUser(batch, "dependent", throttled);
+        CompletableFuture<User> other = addUser(batch, "other");
+
+        // The first time, Graph throttles one step and fails the
+        // step that depends on it with 424
+        mResponder = requests -> {
+            if (mBatches.size() > 1) {
+                return answerAll(requests);
+            }
+
+            JsonArray responses = new JsonArray();
+            for (JsonElement element : requests) {
+                JsonObject request = element.getAsJsonObject();
+                String url = request.get("url").getAsString();
+                if (url.endsWith("throttled")) {
+                    JsonObject response = createResponse(request, 429, null);
+                    response.getAsJsonObject("headers").addProperty("Retry-After", "0");
+                    responses.add(response);
+                } else if (url.endsWith("dependent")) {
+                    responses.add(createResponse(request, 424, null));
+                } else {
+                    responses.add(createResponse(request, 200, createUser(request)));
+                }
+            }
+            return responses;
+        };
+
+        await(batch.execute());
+
+        assertEquals(2, mBatches.size());
+        assertEquals(2, mBatches.get(1).size());
+        assertEquals("/users/throttled", throttled.get().displayName);
+        assertEquals("/users/dependent", dependent.get().displayName);
+        assertEquals("/users/other", other.get().displayName);
+        assertEquals(1, mThrottling.getRetryCount());
+    }
+
+    @Test
+    public void execute_failedStep_failsItAndItsDependents() throws Exception {
+        GraphBatch batch = createBatch();
+        CompletableFuture<User> missing = addUser(batch, "missing");
+        for (int i = 1; i < GraphBatch.MAX_BATCH_SIZE; i++) {
+            addUser(batch, "user" + i);
+        }
+        CompletableFuture<User> dependent = addUser(batch, "dependent", missing);
+
+        mResponder = requests -> {
+            JsonArray responses = new JsonArray();
+            for (JsonElement element : requests) {
+                JsonObject request = element.getAsJsonObject();
+                if (request.get("url").getAsString().endsWith("missing")) {
+                    JsonObject error = new JsonObject();
+                    error.addProperty("message", "Not found");
+                    JsonObject body = new JsonObject();
+                    body.add("error", error);
+                    responses.add(createResponse(request, 404, body));
+                } else {
+                    responses.add(createResponse(request, 200, createUser(request)));
+                }
+            }
+            return responses;
+        };
+
+        await(batch.execute());
+
+        BatchStepException notFound = (BatchStepException) awaitFailure(missing);
+        assertEquals(404, notFound.getStatusCode());
+        assertTrue(notFound.getMessage().endsWith("Not found"));
+
+        // The dependent is in the next batch, so it isn't sent at all
+        BatchStepException failedDependency = (BatchStepException) awaitFailure(dependent);
+        assertEquals(424, failedDependency.getStatusCode());
+        assertEquals(1, mBatches.size());
+    }
+
+    @Test
+    public void execute_batchRequestFails_failsEveryStep() throws Exception {
+        GraphBatch batch = createBatch();
+        List<CompletableFuture<User>> users = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            users.add(addUser(batch, "user" + i));
+        }
+
+        mOffline = true;
+
+        await(batch.execute(2));
+
+        for (CompletableFuture<User> user : users) {
+            assertNotNull(awaitFailure(user));
+        }
+    }
+}
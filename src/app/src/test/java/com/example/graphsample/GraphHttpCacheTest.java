@@ -0,0 +1,87 @@
+package com.example.graphsample;
+
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+import static org.junit.Assert.*;
+
+public class GraphHttpCacheTest {
+    private HttpServer mServer;
+    private final AtomicInteger mServerRequests = new AtomicInteger();
+    private GraphHttpCache mCache;
+    private OkHttpClient mClient;
+
+    @Before
+    public void setUp() throws IOException {
+        // Answers like Graph, which asks for every response to be revalidated
+        mServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        mServer.createContext("/", exchange -> {
+            mServerRequests.incrementAndGet();
+            byte[] body = "{\"timeZone\":\"Pacific Standard Time\"}"
+                    .getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+            exchange.getResponseHeaders().set("Pragma", "no-cache");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream output = exchange.getResponseBody()) {
+                output.write(body);
+            }
+        });
+        mServer.start();
+
+        File directory = Files.createTempDirectory("graph_http").toFile();
+        mCache = new GraphHttpCache(directory, 1024 * 1024);
+        mClient = mCache.addTo(new OkHttpClient.Builder()).build();
+    }
+
+    @After
+    public void tearDown() {
+        mCache.clear();
+        mServer.stop(0);
+    }
+
+    private String get(String path) throws IOException {
+        Request request = new Request.Builder()
+                .url("http://127.0.0.1:" + mServer.getAddress().getPort() + path)
+                .build();
+        try (Response response = mClient.newCall(request).execute()) {
+            assertTrue(response.isSuccessful());
+            return response.body().string();
+        }
+    }
+
+    @Test
+    public void get_cacheablePath_secondRequestServedFromCache() throws IOException {
+        String first = get("/v1.0/me/mailboxSettings");
+        String second = get("/v1.0/me/mailboxSettings");
+
+        assertEquals(first, second);
+        assertEquals(1, mServerRequests.get());
+        assertEquals(1, mCache.getHitCount());
+        assertEquals(1, mCache.getNetworkCount());
+    }
+
+    @Test
+    public void get_otherPath_alwaysUsesNetwork() throws IOException {
+        get("/v1.0/me/calendarView");
+        get("/v1.0/me/calendarView");
+
+        assertEquals(2, mServerRequests.get());
+        assertEquals(0, mCache.getHitCount());
+    }
+}
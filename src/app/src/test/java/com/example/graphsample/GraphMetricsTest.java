@@ -0,0 +1,31 @@
+package com.example.graphsample;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class GraphMetricsTest {
+    @Test
+    public void getEndpoint_replacesIds() {
+        assertEquals("GET /me", GraphMetrics.getEndpoint("GET", "/v1.0/me"));
+        assertEquals("DELETE /me/events/{id}", GraphMetrics.getEndpoint("DELETE",
+                "/v1.0/me/events/AAMkAGI2TGuLAAA%3D"));
+        assertEquals("GET /me/calendarView/delta",
+                GraphMetrics.getEndpoint("GET", "/v1.0/me/calendarView/delta"));
+        assertEquals("POST /$batch", GraphMetrics.getEndpoint("POST", "/v1.0/$batch"));
+    }
+
+    @Test
+    public void histogram_percentiles() {
+        GraphMetrics.Histogram histogram = new GraphMetrics.Histogram();
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i);
+        }
+
+        assertEquals(100, histogram.getCount());
+        assertEquals(50.5, histogram.getMean(), 0.001);
+        assertEquals(50, histogram.getPercentile(50));
+        assertEquals(100, histogram.getPercentile(95));
+        assertEquals(100, histogram.getPercentile(100));
+    }
+}
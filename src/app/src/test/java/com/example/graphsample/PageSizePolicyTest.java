@@ -0,0 +1,69 @@
+package com.example.graphsample;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PageSizePolicyTest {
+    @Test
+    public void recordPage_fullFastPages_growUpToMax() {
+        PageSizePolicy policy = new PageSizePolicy();
+        policy.setPageSizeLimits(10, 80);
+
+        policy.recordPage(25, 100);
+        assertEquals(50, policy.getPageSize());
+        policy.recordPage(50, 100);
+        assertEquals(80, policy.getPageSize());
+        policy.recordPage(80, 100);
+        assertEquals(80, policy.getPageSize());
+        assertEquals("odata.maxpagesize=80", policy.getPreferHeaderValue());
+    }
+
+    @Test
+    public void recordPage_partialPage_keepsSize() {
+        PageSizePolicy policy = new PageSizePolicy();
+
+        policy.recordPage(12, 100);
+
+        assertEquals(25, policy.getPageSize());
+    }
+
+    @Test
+    public void recordPage_slowPages_halveDownToMin() {
+        PageSizePolicy policy = new PageSizePolicy();
+
+        policy.recordPage(25, 2000);
+        assertEquals(12, policy.getPageSize());
+        policy.recordPage(12, 2000);
+        assertEquals(10, policy.getPageSize());
+    }
+
+    @Test
+    public void recordPage_largerPageOverPayloadBudget_keepsSize() {
+        PageSizePolicy policy = new PageSizePolicy();
+        policy.setMaxPageBytes(100 * 1024);
+
+        // 25 events in 80KB, so 50 would be around 160KB
+        policy.recordPayloadBytes(80 * 1024);
+        policy.recordPage(25, 100);
+
+        assertEquals(25, policy.getPageSize());
+    }
+
+    @Test
+    public void recordPage_fixedMode_alwaysUsesDefault() {
+        PageSizePolicy policy = new PageSizePolicy();
+        policy.setMode(PageSizePolicy.Mode.FIXED);
+        policy.setDefaultPageSize(40);
+
+        policy.recordPage(40, 100);
+        policy.recordPage(40, 5000);
+
+        assertEquals(40, policy.getPageSize());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void setPageSizeLimits_maxBelowMin_throws() {
+        new PageSizePolicy().setPageSizeLimits(50, 20);
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.graphsample;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class RequestCoalescerTest {
+    private final AtomicInteger mRequests = new AtomicInteger();
+
+    private CompletableFuture<String> start(CompletableFuture<String> response) {
+        mRequests.incrementAndGet();
+        return response;
+    }
+
+    @Test
+    public void coalesce_sameKeyInFlight_sharesOneRequest() throws Exception {
+        RequestCoalescer coalescer = new RequestCoalescer();
+        CompletableFuture<String> response = new CompletableFuture<>();
+
+        CompletableFuture<String> first = coalescer.coalesce("me", () -> start(response));
+        CompletableFuture<String> second = coalescer.coalesce("me", () -> start(response));
+        response.complete("user");
+
+        assertEquals("user", first.get());
+        assertEquals("user", second.get());
+        assertEquals(1, mRequests.get());
+        assertEquals(1, coalescer.getCoalescedCount());
+    }
+
+    @Test
+    public void coalesce_differentKeys_sendSeparateRequests() {
+        RequestCoalescer coalescer = new RequestCoalescer();
+
+        coalescer.coalesce("me", () -> start(new CompletableFuture<>()));
+        coalescer.coalesce("me/mailboxSettings", () -> start(new CompletableFuture<>()));
+
+        assertEquals(2, mRequests.get());
+        assertEquals(0, coalescer.getCoalescedCount());
+    }
+
+    @Test
+    public void coalesce_afterCompletion_startsNewRequest() throws Exception {
+        RequestCoalescer coalescer = new RequestCoalescer();
+
+        coalescer.coalesce("me", () -> start(CompletableFuture.completedFuture("old"))).get();
+        String value = coalescer.coalesce("me",
+                () -> start(CompletableFuture.completedFuture("new"))).get();
+
+        assertEquals("new", value);
+        assertEquals(2, mRequests.get());
+    }
+
+    @Test
+    public void coalesce_requestFails_everyCallerFails() throws Exception {
+        RequestCoalescer coalescer = new RequestCoalescer();
+        CompletableFuture<String> response = new CompletableFuture<>();
+        IllegalStateException failure = new IllegalStateException("offline");
+
+        CompletableFuture<String> first = coalescer.coalesce("me", () -> start(response));
+        CompletableFuture<String> second = coalescer.coalesce("me", () -> start(response));
+        response.completeExceptionally(failure);
+
+        for (CompletableFuture<String> caller : Arrays.asList(first, second)) {
+            try {
+                caller.get();
+                fail("Expected the request's failure");
+            } catch (ExecutionException exception) {
+                assertSame(failure, exception.getCause());
+            }
+        }
+
+        // The failed request isn't reused
+        coalescer.coalesce("me", () -> start(new CompletableFuture<>()));
+        assertEquals(2, mRequests.get());
+    }
+
+    @Test
+    public void coalesce_supplierThrows_failsAndClearsKey() {
+        RequestCoalescer coalescer = new RequestCoalescer();
+
+        CompletableFuture<String> failed = coalescer.coalesce("me", () -> {
+            throw new IllegalStateException("Not signed in");
+        });
+
+        assertTrue(failed.isCompletedExceptionally());
+        coalescer.coalesce("me", () -> start(new CompletableFuture<>()));
+        assertEquals(1, mRequests.get());
+        assertEquals(0, coalescer.getCoalescedCount());
+    }
+
+    @Test
+    public void coalesce_oneCallerCancels_othersStillComplete() throws Exception {
+        RequestCoalescer coalescer = new RequestCoalescer();
+        CompletableFuture<String> response = new CompletableFuture<>();
+
+        CompletableFuture<String> first = coalescer.coalesce("me", () -> start(response));
+        CompletableFuture<String> second = coalescer.coalesce("me", () -> start(response));
+        first.cancel(true);
+        response.complete("user");
+
+        assertTrue(first.isCancelled());
+        assertFalse(response.isCancelled());
+        assertEquals("user", second.get());
+    }
+}
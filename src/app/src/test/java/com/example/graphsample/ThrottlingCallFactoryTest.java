@@ -0,0 +1,32 @@
+package com.example.graphsample;
+
+import org.junit.Test;
+
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+
+import static org.junit.Assert.*;
+
+public class ThrottlingCallFactoryTest {
+    @Test
+    public void getRetryAfterMillis_parsesSecondsAndDates() {
+        long now = ZonedDateTime.of(2023, 1, 19, 13, 30, 0, 0, ZoneOffset.UTC)
+                .toInstant().toEpochMilli();
+
+        assertEquals(3000, ThrottlingCallFactory.getRetryAfterMillis("3", now));
+        assertEquals(0, ThrottlingCallFactory.getRetryAfterMillis(" 0 ", now));
+        assertEquals(90000, ThrottlingCallFactory.getRetryAfterMillis(
+                "Thu, 19 Jan 2023 13:31:30 GMT", now));
+        // Dates in the past mean retry now
+        assertEquals(0, ThrottlingCallFactory.getRetryAfterMillis(
+                "Thu, 19 Jan 2023 13:00:00 GMT", now));
+    }
+
+    @Test
+    public void getRetryAfterMillis_ignoresInvalidValues() {
+        assertEquals(-1, ThrottlingCallFactory.getRetryAfterMillis(null, 0));
+        assertEquals(-1, ThrottlingCallFactory.getRetryAfterMillis("", 0));
+        assertEquals(-1, ThrottlingCallFactory.getRetryAfterMillis("-5", 0));
+        assertEquals(-1, ThrottlingCallFactory.getRetryAfterMillis("soon", 0));
+    }
+}
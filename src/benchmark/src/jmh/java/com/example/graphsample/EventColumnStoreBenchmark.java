@@ -0,0 +1,102 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT License.
+
+package com.example.graphsample;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Range queries over a year of a busy calendar, as the calendar
+// list does when moving between weeks, and conflict lookups, as
+// the new event form does when its times change
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class EventColumnStoreBenchmark {
+    private static final int EVENT_COUNT = 10000;
+    private static final long HOUR = 60 * 60 * 1000;
+    private static final long WEEK = 7 * 24 * HOUR;
+    private static final long YEAR = 52 * WEEK;
+
+    private List<EventSummary> mEvents;
+    private EventColumnStore mStore;
+    private EventColumnStore mStoreWithLongEvent;
+    private EventIntervalIndex mIndex;
+    private long mNextWeek;
+
+    @Setup
+    public void setup() {
+        // A few recurring subjects and organizers, as in a real calendar
+        ZoneId zoneId = ZoneId.of("UTC");
+        mEvents = new ArrayList<>(EVENT_COUNT);
+        for (int i = 0; i < EVENT_COUNT; i++) {
+            long start = i * (YEAR / EVENT_COUNT);
+            mEvents.add(new EventSummary("AAMkAGI2TG93AAA=" + i, "DwAAABYAAAB" + i,
+                    "Meeting " + (i % 50), "Organizer " + (i % 20),
+                    start, start + HOUR, zoneId));
+        }
+        mStore = EventColumnStore.build(mEvents, 0, YEAR);
+
+        // The same year with a leave block covering all of it
+        List<EventSummary> withLongEvent = new ArrayList<>(mEvents);
+        withLongEvent.add(new EventSummary("AAMkAGI2TG93AAB=", "DwAAABYAAAC",
+                "Leave", "Organizer 0", 0, YEAR, zoneId));
+        mStoreWithLongEvent = EventColumnStore.build(withLongEvent, 0, YEAR);
+        mIndex = EventIntervalIndex.build(mEvents);
+    }
+
+    // Building the store from a year of summaries
+    @Benchmark
+    public EventColumnStore build() {
+        return EventColumnStore.build(mEvents, 0, YEAR);
+    }
+
+    // Reading one week's events
+    @Benchmark
+    public List<EventSummary> queryWeek() {
+        long start = mNextWeek;
+        mNextWeek = (mNextWeek + WEEK) % YEAR;
+        return mStore.query(start, start + WEEK);
+    }
+
+    // Reading one week's events when one event spans the year
+    @Benchmark
+    public List<EventSummary> queryWeekWithLongEvent() {
+        long start = mNextWeek;
+        mNextWeek = (mNextWeek + WEEK) % YEAR;
+        return mStoreWithLongEvent.query(start, start + WEEK);
+    }
+
+    // Scanning the list the same way, for comparison
+    @Benchmark
+    public List<EventSummary> scanWeek() {
+        long start = mNextWeek;
+        mNextWeek = (mNextWeek + WEEK) % YEAR;
+
+        List<EventSummary> events = new ArrayList<>();
+        for (EventSummary event : mEvents) {
+            if (event.getStart() < start + WEEK && event.getEnd() > start) {
+                events.add(event);
+            }
+        }
+        return events;
+    }
+
+    // Finding the events a proposed hour-long meeting overlaps
+    @Benchmark
+    public List<EventSummary> findConflicts() {
+        long start = mNextWeek;
+        mNextWeek = (mNextWeek + WEEK + HOUR) % YEAR;
+        return mIndex.getOverlapping(start, start + HOUR);
+    }
+}
@@ -0,0 +1,65 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT License.
+
+package com.example.graphsample;
+
+import com.microsoft.graph.models.Event;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Formatting the start and end of each event, as the
+// calendar list does when binding rows
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class EventDateFormatterBenchmark {
+    private List<Event> mEvents;
+    private int mNext;
+
+    @Setup
+    public void setup() {
+        mEvents = Fixtures.readCalendarViewPage();
+    }
+
+    // One row
+    @Benchmark
+    public void formatEvent(Blackhole blackhole) {
+        Event event = mEvents.get(mNext);
+        mNext = (mNext + 1) % mEvents.size();
+
+        blackhole.consume(EventDateFormatter.getLocalDateTimeString(event.start));
+        blackhole.consume(EventDateFormatter.getLocalDateTimeString(event.end));
+    }
+
+    // A full page of rows
+    @Benchmark
+    public void formatPage(Blackhole blackhole) {
+        for (Event event : mEvents) {
+            blackhole.consume(EventDateFormatter.getLocalDateTimeString(event.start));
+            blackhole.consume(EventDateFormatter.getLocalDateTimeString(event.end));
+        }
+    }
+
+    // Converting a page to the summaries kept in memory
+    @Benchmark
+    public List<EventSummary> buildSummaries() {
+        return EventSummary.fromEvents(mEvents);
+    }
+
+    // Preparing the display rows for a page, done once per
+    // page off the main thread
+    @Benchmark
+    public List<EventDisplayRow> buildRows() {
+        return EventDisplayRow.fromSummaries(EventSummary.fromEvents(mEvents));
+    }
+}
@@ -0,0 +1,38 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT License.
+
+package com.example.graphsample;
+
+import com.microsoft.graph.requests.EventCollectionResponse;
+import com.microsoft.graph.serializer.ISerializer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+// Deserializing a calendarView page with the Graph SDK's serializer,
+// the work done on the network threads for every page
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class EventDeserializationBenchmark {
+    private ISerializer mSerializer;
+    private String mPage;
+
+    @Setup
+    public void setup() {
+        mSerializer = Fixtures.createSerializer();
+        mPage = Fixtures.read(Fixtures.CALENDAR_VIEW_PAGE);
+    }
+
+    @Benchmark
+    public EventCollectionResponse deserializePage() {
+        return mSerializer.deserializeObject(mPage, EventCollectionResponse.class);
+    }
+}
@@ -0,0 +1,57 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT License.
+
+package com.example.graphsample;
+
+import com.microsoft.graph.logger.DefaultLogger;
+import com.microsoft.graph.models.Event;
+import com.microsoft.graph.requests.EventCollectionResponse;
+import com.microsoft.graph.serializer.DefaultSerializer;
+import com.microsoft.graph.serializer.ISerializer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+// Loads the recorded Graph responses in src/jmh/resources/fixtures
+// calendarview-page.json - one page of GET /me/calendarView as
+//     requested by GraphHelper, 25 events in Pacific Standard Time
+public class Fixtures {
+    public static final String CALENDAR_VIEW_PAGE = "calendarview-page.json";
+
+    private Fixtures() {}
+
+    public static String read(String name) {
+        try (InputStream stream = Fixtures.class.getResourceAsStream("/fixtures/" + name)) {
+            if (stream == null) {
+                throw new IllegalArgumentException("Fixture not found: " + name);
+            }
+
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = stream.read(buffer)) != -1) {
+                output.write(buffer, 0, read);
+            }
+            return new String(output.toByteArray(), StandardCharsets.UTF_8);
+        } catch (IOException exception) {
+            throw new IllegalStateException("Unable to read fixture " + name, exception);
+        }
+    }
+
+    // The serializer the Graph client uses by default
+    public static ISerializer createSerializer() {
+        return new DefaultSerializer(new DefaultLogger());
+    }
+
+    public static List<Event> readCalendarViewPage() {
+        EventCollectionResponse response = createSerializer()
+                .deserializeObject(read(CALENDAR_VIEW_PAGE), EventCollectionResponse.class);
+        if (response == null || response.value == null) {
+            throw new IllegalStateException("Unable to deserialize " + CALENDAR_VIEW_PAGE);
+        }
+        return response.value;
+    }
+}
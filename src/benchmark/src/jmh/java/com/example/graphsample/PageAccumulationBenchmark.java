@@ -0,0 +1,62 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT License.
+
+package com.example.graphsample;
+
+import com.microsoft.graph.models.Event;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Collecting pages into one list as GraphHelper.processPage does,
+// then reading every position by index as the list adapter does
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class PageAccumulationBenchmark {
+    @Param({"LinkedList", "ArrayList"})
+    public String listType;
+
+    @Param({"1", "4", "20"})
+    public int pageCount;
+
+    private List<Event> mPage;
+
+    @Setup
+    public void setup() {
+        mPage = Fixtures.readCalendarViewPage();
+    }
+
+    private List<Event> newList() {
+        return "LinkedList".equals(listType) ? new LinkedList<>() : new ArrayList<>();
+    }
+
+    @Benchmark
+    public List<Event> accumulate() {
+        List<Event> events = newList();
+        for (int i = 0; i < pageCount; i++) {
+            events.addAll(mPage);
+        }
+        return events;
+    }
+
+    @Benchmark
+    public void accumulateAndBind(Blackhole blackhole) {
+        List<Event> events = accumulate();
+        for (int position = 0; position < events.size(); position++) {
+            blackhole.consume(events.get(position));
+        }
+    }
+}
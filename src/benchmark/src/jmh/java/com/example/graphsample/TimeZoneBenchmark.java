@@ -0,0 +1,53 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT License.
+
+package com.example.graphsample;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.time.ZoneId;
+import java.time.zone.ZoneRules;
+import java.util.concurrent.TimeUnit;
+
+// Resolving the time zone Graph returns with each event,
+// done twice for every row the calendar binds
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TimeZoneBenchmark {
+    // Windows names, and an IANA name that is passed through
+    @Param({"Pacific Standard Time", "W. Europe Standard Time", "America/New_York"})
+    public String timeZone;
+
+    @Benchmark
+    public String getIanaFromWindows() {
+        return GraphToIana.getIanaFromWindows(timeZone);
+    }
+
+    @Benchmark
+    public ZoneId getZoneIdFromWindows() {
+        return GraphToIana.getZoneIdFromWindows(timeZone);
+    }
+
+    // Uncached resolution, for comparison with ZoneIdResolver
+    @Benchmark
+    public ZoneId zoneIdOf() {
+        return ZoneId.of(GraphToIana.getIanaFromWindows(timeZone));
+    }
+
+    @Benchmark
+    public ZoneRules getRules() {
+        return ZoneIdResolver.getInstance().getRules(timeZone);
+    }
+
+    @Benchmark
+    public String getWindowsFromIana() {
+        return GraphToIana.getWindowsFromIana(timeZone);
+    }
+}
@@ -0,0 +1,134 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT License.
+
+package com.example.graphsample;
+
+import androidx.annotation.NonNull;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.temporal.TemporalAdjusters;
+import java.util.Objects;
+
+// Immutable range of days shown by the calendar, either a week
+// starting on Sunday or a calendar month
+// Ranges are computed in the user's time zone, so they start at
+// local midnight across daylight saving changes, and are reported
+// to Graph in UTC
+public final class CalendarRange {
+    private static final ZoneId UTC = ZoneId.of("UTC");
+
+    public enum Mode {
+        WEEK,
+        MONTH
+    }
+
+    private final Mode mMode;
+    private final ZoneId mZoneId;
+    private final LocalDate mFirstDay;
+
+    private CalendarRange(@NonNull Mode mode, @NonNull ZoneId zoneId, @NonNull LocalDate firstDay) {
+        mMode = mode;
+        mZoneId = zoneId;
+        mFirstDay = firstDay;
+    }
+
+    // The range containing the given day
+    @NonNull
+    public static CalendarRange containing(@NonNull Mode mode, @NonNull ZoneId zoneId,
+                                           @NonNull LocalDate day) {
+        LocalDate firstDay = mode == Mode.WEEK
+                ? day.with(TemporalAdjusters.previousOrSame(DayOfWeek.SUNDAY))
+                : day.withDayOfMonth(1);
+        return new CalendarRange(mode, zoneId, firstDay);
+    }
+
+    // The range containing today in the given time zone
+    @NonNull
+    public static CalendarRange current(@NonNull Mode mode, @NonNull ZoneId zoneId) {
+        return containing(mode, zoneId, LocalDate.now(zoneId));
+    }
+
+    @NonNull
+    public CalendarRange next() {
+        return new CalendarRange(mMode, mZoneId,
+                mMode == Mode.WEEK ? mFirstDay.plusWeeks(1) : mFirstDay.plusMonths(1));
+    }
+
+    @NonNull
+    public CalendarRange previous() {
+        return new CalendarRange(mMode, mZoneId,
+                mMode == Mode.WEEK ? mFirstDay.minusWeeks(1) : mFirstDay.minusMonths(1));
+    }
+
+    // Switches between week and month, keeping the first day
+    // of this range in view
+    @NonNull
+    public CalendarRange withMode(@NonNull Mode mode) {
+        return mode == mMode ? this : containing(mode, mZoneId, mFirstDay);
+    }
+
+    @NonNull
+    public Mode getMode() {
+        return mMode;
+    }
+
+    @NonNull
+    public ZoneId getZoneId() {
+        return mZoneId;
+    }
+
+    @NonNull
+    public LocalDate getFirstDay() {
+        return mFirstDay;
+    }
+
+    // The day after the last day of the range
+    @NonNull
+    public LocalDate getEndDay() {
+        return mMode == Mode.WEEK ? mFirstDay.plusWeeks(1) : mFirstDay.plusMonths(1);
+    }
+
+    // Local midnight of the first day, in UTC
+    @NonNull
+    public ZonedDateTime getStart() {
+        return toUtc(mFirstDay);
+    }
+
+    // Local midnight after the last day, in UTC
+    @NonNull
+    public ZonedDateTime getEnd() {
+        return toUtc(getEndDay());
+    }
+
+    private ZonedDateTime toUtc(LocalDate day) {
+        return day.atStartOfDay(mZoneId).withZoneSameInstant(UTC);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof CalendarRange)) {
+            return false;
+        }
+
+        CalendarRange range = (CalendarRange) other;
+        return mMode == range.mMode && mZoneId.equals(range.mZoneId) &&
+                mFirstDay.equals(range.mFirstDay);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(mMode, mZoneId, mFirstDay);
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return mMode + " " + mFirstDay + " " + mZoneId;
+    }
+}
@@ -0,0 +1,255 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT License.
+
+package com.example.graphsample;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+// In-memory cache of calendar view results, keyed by range and the
+// time zone requested in the Prefer header
+// Ranges in the same time zone that overlap or touch are merged into
+// one window, so a range is found even if it was loaded as part of a
+// larger one, or as several smaller ones. Windows are evicted least
+// recently used first once their estimated size exceeds the budget
+// Each window keeps its events in an EventColumnStore, so a range is
+// found by binary search and a window of thousands of events costs a
+// few primitive arrays rather than an object per event
+public class CalendarWindowCache {
+    // Graph IDs and change keys make an event about 500 bytes, so this
+    // holds around 16,000 events, a year of a busy calendar with room
+    // for other time zones. A window larger than the budget isn't cached
+    public static final long DEFAULT_MAX_BYTES = 8 * 1024 * 1024;
+
+    private static class Window {
+        final String timeZone;
+        final long start;
+        final long end;
+        // Events without a valid start or end are
+        // stored as lasting the whole window
+        final EventColumnStore events;
+        final long bytes;
+
+        Window(String timeZone, long start, long end, List<EventSummary> events) {
+            this.timeZone = timeZone;
+            this.start = start;
+            this.end = end;
+            this.events = EventColumnStore.build(events, start, end);
+            this.bytes = this.events.estimateBytes();
+        }
+    }
+
+    // Used as an access-ordered set, eldest first
+    private final LinkedHashMap<Window, Window> mWindows = new LinkedHashMap<>(16, 0.75f, true);
+    private long mMaxBytes;
+    private long mBytes = 0;
+    private long mHits = 0;
+    private long mMisses = 0;
+    private long mVersion = 0;
+
+    public CalendarWindowCache() {
+        this(DEFAULT_MAX_BYTES);
+    }
+
+    public CalendarWindowCache(long maxBytes) {
+        mMaxBytes = maxBytes;
+    }
+
+    // Returns the events in the range, in start order, or null if
+    // the range hasn't been loaded in this time zone
+    @Nullable
+    public synchronized List<EventSummary> get(@NonNull ZonedDateTime viewStart,
+                                               @NonNull ZonedDateTime viewEnd,
+                                               @NonNull String timeZone) {
+        long start = viewStart.toInstant().toEpochMilli();
+        long end = viewEnd.toInstant().toEpochMilli();
+
+        Window found = null;
+        for (Window window : mWindows.keySet()) {
+            if (window.timeZone.equals(timeZone) && window.start <= start && window.end >= end) {
+                found = window;
+                break;
+            }
+        }
+
+        if (found == null) {
+            mMisses++;
+            return null;
+        }
+
+        // Mark as recently used
+        mWindows.get(found);
+        mHits++;
+
+        return found.events.query(start, end);
+    }
+
+    // Stores the complete results of a calendar view request. Events
+    // already cached for the range are replaced, so events missing from
+    // the results are removed
+    public synchronized void put(@NonNull ZonedDateTime viewStart,
+                                 @NonNull ZonedDateTime viewEnd,
+                                 @NonNull String timeZone,
+                                 @NonNull List<EventSummary> events) {
+        long start = viewStart.toInstant().toEpochMilli();
+        long end = viewEnd.toInstant().toEpochMilli();
+
+        List<EventSummary> merged = new ArrayList<>(events);
+        Set<String> ids = new HashSet<>();
+        for (EventSummary event : events) {
+            ids.add(event.getId());
+        }
+
+        // Take in the windows this range overlaps or touches,
+        // keeping their events outside the range
+        long mergedStart = start;
+        long mergedEnd = end;
+        List<Window> replaced = new ArrayList<>();
+        for (Window window : mWindows.keySet()) {
+            if (window.timeZone.equals(timeZone) && window.start <= end && window.end >= start) {
+                replaced.add(window);
+                mergedStart = Math.min(mergedStart, window.start);
+                mergedEnd = Math.max(mergedEnd, window.end);
+                for (int i = 0; i < window.events.size(); i++) {
+                    if (!EventColumnStore.overlaps(window.events.getStart(i),
+                            window.events.getEnd(i), start, end) &&
+                            !ids.contains(window.events.getId(i))) {
+                        merged.add(window.events.get(i));
+                    }
+                }
+            }
+        }
+
+        for (Window window : replaced) {
+            remove(window);
+        }
+
+        Window window = new Window(timeZone, mergedStart, mergedEnd, merged);
+        if (window.bytes > mMaxBytes && !replaced.isEmpty()) {
+            // The merged window is too large, keep only this range
+            window = new Window(timeZone, start, end, events);
+        }
+
+        if (window.bytes <= mMaxBytes) {
+            mWindows.put(window, window);
+            mBytes += window.bytes;
+            trimToSize();
+        }
+        mVersion++;
+    }
+
+    // Adds an event created since its windows were loaded, to every
+    // window it overlaps, replacing any copy with the same ID, so it is
+    // found without loading those ranges again
+    public synchronized void add(@NonNull EventSummary event) {
+        if (event.getStart() == EventSummary.NO_TIME || event.getEnd() == EventSummary.NO_TIME) {
+            return;
+        }
+
+        List<Window> replaced = new ArrayList<>();
+        for (Window window : mWindows.keySet()) {
+            if (EventColumnStore.overlaps(event.getStart(), event.getEnd(),
+                    window.start, window.end)) {
+                replaced.add(window);
+            }
+        }
+
+        for (Window window : replaced) {
+            List<EventSummary> events = new ArrayList<>(window.events.size() + 1);
+            for (int i = 0; i < window.events.size(); i++) {
+                if (!Objects.equals(window.events.getId(i), event.getId())) {
+                    events.add(window.events.get(i));
+                }
+            }
+            events.add(event);
+
+            remove(window);
+            Window updated = new Window(window.timeZone, window.start, window.end, events);
+            mWindows.put(updated, updated);
+            mBytes += updated.bytes;
+        }
+
+        trimToSize();
+        mVersion++;
+    }
+
+    // Every cached event, once each, in no particular order. Windows
+    // in different time zones hold the same events, these are
+    // returned in the time zone of the most recently used window
+    @NonNull
+    public synchronized List<EventSummary> getAllEvents() {
+        List<EventSummary> events = new ArrayList<>();
+        Set<String> ids = new HashSet<>();
+        List<Window> windows = new ArrayList<>(mWindows.keySet());
+        for (int w = windows.size() - 1; w >= 0; w--) {
+            EventColumnStore store = windows.get(w).events;
+            for (int i = 0; i < store.size(); i++) {
+                String id = store.getId(i);
+                if (id == null || ids.add(id)) {
+                    events.add(store.get(i));
+                }
+            }
+        }
+        return events;
+    }
+
+    // Changes each time the cached events may have changed
+    public synchronized long getVersion() {
+        return mVersion;
+    }
+
+    public synchronized void setMaxBytes(long maxBytes) {
+        mMaxBytes = maxBytes;
+        trimToSize();
+        mVersion++;
+    }
+
+    public synchronized void clear() {
+        mWindows.clear();
+        mBytes = 0;
+        mVersion++;
+    }
+
+    public synchronized long getSizeBytes() {
+        return mBytes;
+    }
+
+    public synchronized long getMaxBytes() {
+        return mMaxBytes;
+    }
+
+    public synchronized int getWindowCount() {
+        return mWindows.size();
+    }
+
+    public synchronized long getHitCount() {
+        return mHits;
+    }
+
+    public synchronized long getMissCount() {
+        return mMisses;
+    }
+
+    private void remove(Window window) {
+        if (mWindows.remove(window) != null) {
+            mBytes -= window.bytes;
+        }
+    }
+
+    private void trimToSize() {
+        Iterator<Window> eldest = mWindows.keySet().iterator();
+        while (mBytes > mMaxBytes && eldest.hasNext()) {
+            mBytes -= eldest.next().bytes;
+            eldest.remove();
+        }
+    }
+}
@@ -0,0 +1,217 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT License.
+
+package com.example.graphsample;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Immutable column-oriented copy of a set of events, sorted by start
+// Each field is stored in its own array: starts and ends as epoch
+// milliseconds, and subjects, organizers and time zones as indexes into
+// tables holding each distinct value once, which recurring meetings
+// make very effective. Range queries search the starts and ends through
+// an IntervalTree, so looking up a week in a year of events only touches
+// that week, however long some of the events are
+// Events are turned back into EventSummary objects when read
+public final class EventColumnStore {
+    // Per event: three longs, three ints, a flag byte and two references,
+    // as the arrays hold them, plus the id and change key objects
+    private static final int BYTES_PER_EVENT = 8 * 3 + 4 * 3 + 1 + 8 * 2 + 40 * 2;
+    private static final int BYTES_PER_STRING = 40;
+
+    private static final byte NO_START = 1;
+    private static final byte NO_END = 2;
+
+    private final String[] mIds;
+    private final String[] mChangeKeys;
+    private final long[] mStarts;
+    private final long[] mEnds;
+    private final IntervalTree mTree;
+    private final byte[] mMissing;
+    private final int[] mSubjects;
+    private final int[] mOrganizers;
+    private final int[] mZones;
+    private final String[] mStrings;
+    private final ZoneId[] mZoneIds;
+    private final long mBytes;
+
+    private EventColumnStore(String[] ids, String[] changeKeys, long[] starts, long[] ends,
+                             byte[] missing, int[] subjects, int[] organizers, int[] zones,
+                             String[] strings, ZoneId[] zoneIds, long bytes) {
+        mIds = ids;
+        mChangeKeys = changeKeys;
+        mStarts = starts;
+        mEnds = ends;
+        mMissing = missing;
+        mSubjects = subjects;
+        mOrganizers = organizers;
+        mZones = zones;
+        mStrings = strings;
+        mZoneIds = zoneIds;
+        mTree = new IntervalTree(starts, ends, true);
+        mBytes = bytes;
+    }
+
+    // Builds the store from summaries in any order. Events without a
+    // start or end are stored as starting or ending at the given times,
+    // for range queries, and read back without them
+    @NonNull
+    public static EventColumnStore build(@NonNull List<EventSummary> events,
+                                         long defaultStart, long defaultEnd) {
+        int count = events.size();
+        long[] starts = new long[count];
+        long[] ends = new long[count];
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            EventSummary event = events.get(i);
+            starts[i] = event.getStart() == EventSummary.NO_TIME ? defaultStart : event.getStart();
+            ends[i] = Math.max(starts[i],
+                    event.getEnd() == EventSummary.NO_TIME ? defaultEnd : event.getEnd());
+            order[i] = i;
+        }
+
+        Arrays.sort(order, (a, b) -> Long.compare(starts[a], starts[b]));
+
+        StringTable strings = new StringTable();
+        Map<ZoneId, Integer> zoneIndexes = new HashMap<>();
+        List<ZoneId> zoneIds = new ArrayList<>();
+
+        String[] sortedIds = new String[count];
+        String[] sortedChangeKeys = new String[count];
+        long[] sortedStarts = new long[count];
+        long[] sortedEnds = new long[count];
+        byte[] missing = new byte[count];
+        int[] subjects = new int[count];
+        int[] organizers = new int[count];
+        int[] zones = new int[count];
+        long chars = 0;
+
+        for (int i = 0; i < count; i++) {
+            EventSummary event = events.get(order[i]);
+            sortedIds[i] = event.getId();
+            sortedChangeKeys[i] = event.getChangeKey();
+            sortedStarts[i] = starts[order[i]];
+            sortedEnds[i] = ends[order[i]];
+            missing[i] = (byte) ((event.getStart() == EventSummary.NO_TIME ? NO_START : 0) |
+                    (event.getEnd() == EventSummary.NO_TIME ? NO_END : 0));
+            subjects[i] = strings.indexOf(event.getSubject());
+            organizers[i] = strings.indexOf(event.getOrganizer());
+
+            Integer zone = zoneIndexes.get(event.getZoneId());
+            if (zone == null) {
+                zone = zoneIds.size();
+                zoneIndexes.put(event.getZoneId(), zone);
+                zoneIds.add(event.getZoneId());
+            }
+            zones[i] = zone;
+
+            chars += length(event.getId()) + length(event.getChangeKey());
+        }
+
+        long bytes = (long) BYTES_PER_EVENT * count + 2 * chars +
+                BYTES_PER_STRING * strings.size() + 2 * strings.getCharCount();
+
+        return new EventColumnStore(sortedIds, sortedChangeKeys, sortedStarts, sortedEnds,
+                missing, subjects, organizers, zones, strings.toArray(),
+                zoneIds.toArray(new ZoneId[0]), bytes);
+    }
+
+    public int size() {
+        return mStarts.length;
+    }
+
+    // Start used for range queries, never EventSummary.NO_TIME
+    public long getStart(int index) {
+        return mStarts[index];
+    }
+
+    // End used for range queries, never EventSummary.NO_TIME
+    public long getEnd(int index) {
+        return mEnds[index];
+    }
+
+    @Nullable
+    public String getId(int index) {
+        return mIds[index];
+    }
+
+    @NonNull
+    public EventSummary get(int index) {
+        return new EventSummary(mIds[index], mChangeKeys[index],
+                mStrings[mSubjects[index]], mStrings[mOrganizers[index]],
+                (mMissing[index] & NO_START) != 0 ? EventSummary.NO_TIME : mStarts[index],
+                (mMissing[index] & NO_END) != 0 ? EventSummary.NO_TIME : mEnds[index],
+                mZoneIds[mZones[index]]);
+    }
+
+    // Events overlapping the range, in start order
+    @NonNull
+    public List<EventSummary> query(long start, long end) {
+        List<EventSummary> events = new ArrayList<>();
+        mTree.forEachOverlapping(start, end, index -> events.add(get(index)));
+        return events;
+    }
+
+    // Number of events overlapping the range, without creating them
+    public int count(long start, long end) {
+        return mTree.count(start, end);
+    }
+
+    // Number of distinct subject and organizer strings
+    public int getStringCount() {
+        return mStrings.length;
+    }
+
+    // Approximate retained size, counting two bytes per character
+    public long estimateBytes() {
+        return mBytes;
+    }
+
+    // Events that start at the start of the range without a
+    // duration are included, as calendarView does
+    static boolean overlaps(long eventStart, long eventEnd, long start, long end) {
+        return IntervalTree.overlaps(eventStart, eventEnd, start, end, true);
+    }
+
+    private static int length(@Nullable String value) {
+        return value == null ? 0 : value.length();
+    }
+
+    // Assigns each distinct string an index
+    private static class StringTable {
+        private final Map<String, Integer> mIndexes = new HashMap<>();
+        private final List<String> mStrings = new ArrayList<>();
+        private long mChars = 0;
+
+        int indexOf(String value) {
+            Integer index = mIndexes.get(value);
+            if (index == null) {
+                index = mStrings.size();
+                mIndexes.put(value, index);
+                mStrings.add(value);
+                mChars += value.length();
+            }
+            return index;
+        }
+
+        int size() {
+            return mStrings.size();
+        }
+
+        long getCharCount() {
+            return mChars;
+        }
+
+        String[] toArray() {
+            return mStrings.toArray(new String[0]);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT License.
+
+package com.example.graphsample;
+
+import androidx.annotation.NonNull;
+
+import com.microsoft.graph.models.DateTimeTimeZone;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.FormatStyle;
+import java.util.Locale;
+
+// Formats the start and end times of events for display
+// The localized formatters are created once per locale, and each
+// thread reuses a single StringBuilder for the output
+public class EventDateFormatter {
+    private static final ThreadLocal<StringBuilder> BUILDER =
+            ThreadLocal.withInitial(() -> new StringBuilder(32));
+
+    private static volatile Formatters sFormatters = null;
+
+    private EventDateFormatter() {}
+
+    private static class Formatters {
+        final Locale locale;
+        final DateTimeFormatter date;
+        final DateTimeFormatter time;
+
+        Formatters(Locale locale) {
+            this.locale = locale;
+            date = DateTimeFormatter.ofLocalizedDate(FormatStyle.MEDIUM).withLocale(locale);
+            time = DateTimeFormatter.ofLocalizedTime(FormatStyle.SHORT).withLocale(locale);
+        }
+    }
+
+    // Convert Graph's DateTimeTimeZone format to
+    // a LocalDateTime, then return a formatted string
+    @NonNull
+    public static String getLocalDateTimeString(@NonNull DateTimeTimeZone dateTime) {
+        return getLocalDateTimeString(dateTime.dateTime, dateTime.timeZone);
+    }
+
+    @NonNull
+    public static String getLocalDateTimeString(@NonNull String dateTime, @NonNull String timeZone) {
+        return format(parseLocalDateTime(dateTime)
+                .atZone(ZoneIdResolver.getInstance().getZoneId(timeZone)));
+    }
+
+    // Formats an instant in the given time zone
+    @NonNull
+    public static String getLocalDateTimeString(long epochMillis, @NonNull ZoneId zoneId) {
+        return format(Instant.ofEpochMilli(epochMillis).atZone(zoneId));
+    }
+
+    private static String format(ZonedDateTime localDateTime) {
+        Formatters formatters = getFormatters();
+        StringBuilder builder = BUILDER.get();
+        builder.setLength(0);
+        formatters.date.formatTo(localDateTime, builder);
+        builder.append(' ');
+        formatters.time.formatTo(localDateTime, builder);
+        return builder.toString();
+    }
+
+    // Parses the date and time format Graph uses, for example
+    // 2023-01-19T13:30:00.0000000, without going through a
+    // DateTimeFormatter. Other ISO formats are passed to LocalDateTime.parse
+    @NonNull
+    static LocalDateTime parseLocalDateTime(@NonNull String value) {
+        if (value.length() >= 19 && value.length() <= 29 &&
+                value.charAt(4) == '-' && value.charAt(7) == '-' && value.charAt(10) == 'T' &&
+                value.charAt(13) == ':' && value.charAt(16) == ':') {
+            int year = parseDigits(value, 0, 4);
+            int month = parseDigits(value, 5, 7);
+            int day = parseDigits(value, 8, 10);
+            int hour = parseDigits(value, 11, 13);
+            int minute = parseDigits(value, 14, 16);
+            int second = parseDigits(value, 17, 19);
+
+            int nanos = 0;
+            boolean valid = year >= 0 && month >= 0 && day >= 0 &&
+                    hour >= 0 && minute >= 0 && second >= 0;
+            if (valid && value.length() > 19) {
+                // Fraction of up to 9 digits
+                valid = value.charAt(19) == '.' && value.length() > 20;
+                nanos = valid ? parseDigits(value, 20, value.length()) : -1;
+                for (int i = value.length(); i < 29 && nanos >= 0; i++) {
+                    nanos *= 10;
+                }
+                valid = valid && nanos >= 0;
+            }
+
+            if (valid) {
+                return LocalDateTime.of(year, month, day, hour, minute, second, nanos);
+            }
+        }
+
+        return LocalDateTime.parse(value);
+    }
+
+    // Returns -1 if any character isn't a digit
+    private static int parseDigits(String value, int start, int end) {
+        int result = 0;
+        for (int i = start; i < end; i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            result = result * 10 + (c - '0');
+        }
+        return result;
+    }
+
+    // Formatters for the current locale, recreated if it changes
+    private static Formatters getFormatters() {
+        Locale locale = Locale.getDefault(Locale.Category.FORMAT);
+        Formatters formatters = sFormatters;
+        if (formatters == null || !formatters.locale.equals(locale)) {
+            formatters = new Formatters(locale);
+            sFormatters = formatters;
+        }
+        return formatters;
+    }
+}
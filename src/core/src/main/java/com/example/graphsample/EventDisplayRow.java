@@ -0,0 +1,103 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT License.
+
+package com.example.graphsample;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+// Immutable row of the calendar list with every value already
+// formatted, so binding a row only sets text
+// Rows are built off the main thread with fromSummaries
+public final class EventDisplayRow {
+    // Orders rows by start time, rows without one last
+    public static final Comparator<EventDisplayRow> START_ORDER = Comparator.comparingLong(
+            row -> row.mStartMillis == EventSummary.NO_TIME ? Long.MAX_VALUE : row.mStartMillis);
+
+    private final String mId;
+    private final String mChangeKey;
+    private final String mSubject;
+    private final String mOrganizer;
+    private final String mStart;
+    private final String mEnd;
+    private final long mStartMillis;
+
+    public EventDisplayRow(@Nullable String id, @Nullable String changeKey,
+                           @NonNull String subject, @NonNull String organizer,
+                           @NonNull String start, @NonNull String end,
+                           long startMillis) {
+        mId = id;
+        mChangeKey = changeKey;
+        mSubject = subject;
+        mOrganizer = organizer;
+        mStart = start;
+        mEnd = end;
+        mStartMillis = startMillis;
+    }
+
+    // Times are shown in the time zone Graph returned them in
+    @NonNull
+    public static EventDisplayRow fromSummary(@NonNull EventSummary summary) {
+        return new EventDisplayRow(summary.getId(), summary.getChangeKey(),
+                summary.getSubject(),
+                summary.getOrganizer(),
+                format(summary.getStart(), summary),
+                format(summary.getEnd(), summary),
+                summary.getStart());
+    }
+
+    // Converts a list of summaries, keeping their order
+    // The returned list can be modified
+    @NonNull
+    public static List<EventDisplayRow> fromSummaries(@NonNull List<EventSummary> summaries) {
+        List<EventDisplayRow> rows = new ArrayList<>(summaries.size());
+        for (EventSummary summary : summaries) {
+            rows.add(fromSummary(summary));
+        }
+        return rows;
+    }
+
+    private static String format(long epochMillis, EventSummary summary) {
+        return epochMillis == EventSummary.NO_TIME
+                ? "" : EventDateFormatter.getLocalDateTimeString(epochMillis, summary.getZoneId());
+    }
+
+    @Nullable
+    public String getId() {
+        return mId;
+    }
+
+    @Nullable
+    public String getChangeKey() {
+        return mChangeKey;
+    }
+
+    @NonNull
+    public String getSubject() {
+        return mSubject;
+    }
+
+    @NonNull
+    public String getOrganizer() {
+        return mOrganizer;
+    }
+
+    @NonNull
+    public String getStart() {
+        return mStart;
+    }
+
+    @NonNull
+    public String getEnd() {
+        return mEnd;
+    }
+
+    // Epoch milliseconds, or EventSummary.NO_TIME
+    public long getStartMillis() {
+        return mStartMillis;
+    }
+}
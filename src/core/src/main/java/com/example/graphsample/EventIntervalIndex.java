@@ -0,0 +1,68 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT License.
+
+package com.example.graphsample;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+// Immutable interval tree over events, for finding the events a
+// proposed time overlaps without a request to Graph
+// Events are sorted by start and searched through an IntervalTree,
+// so a lookup takes microseconds even with thousands of events,
+// however long some of them are
+public final class EventIntervalIndex {
+    private final EventSummary[] mEvents;
+    private final IntervalTree mTree;
+
+    private EventIntervalIndex(EventSummary[] events) {
+        mEvents = events;
+        long[] starts = new long[events.length];
+        long[] ends = new long[events.length];
+
+        for (int i = 0; i < events.length; i++) {
+            starts[i] = events[i].getStart();
+            ends[i] = events[i].getEnd();
+        }
+        mTree = new IntervalTree(starts, ends, false);
+    }
+
+    // Events without a valid start and end can't
+    // conflict with anything, so they are left out
+    @NonNull
+    public static EventIntervalIndex build(@NonNull Collection<EventSummary> events) {
+        List<EventSummary> timed = new ArrayList<>(events.size());
+        for (EventSummary event : events) {
+            if (event.getStart() != EventSummary.NO_TIME &&
+                    event.getEnd() != EventSummary.NO_TIME) {
+                timed.add(event);
+            }
+        }
+
+        timed.sort(EventSummary.START_ORDER);
+        return new EventIntervalIndex(timed.toArray(new EventSummary[0]));
+    }
+
+    public int size() {
+        return mEvents.length;
+    }
+
+    // Events that overlap the range, in start order. Events that end as
+    // the range starts, or start as it ends, don't overlap it
+    @NonNull
+    public List<EventSummary> getOverlapping(long start, long end) {
+        List<EventSummary> events = new ArrayList<>();
+        if (end > start) {
+            mTree.forEachOverlapping(start, end, index -> events.add(mEvents[index]));
+        }
+        return events;
+    }
+
+    // Whether anything overlaps the range, stopping at the first match
+    public boolean hasOverlap(long start, long end) {
+        return end > start && !mTree.forEachOverlapping(start, end, index -> false);
+    }
+}
@@ -0,0 +1,235 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT License.
+
+package com.example.graphsample;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.microsoft.graph.models.Event;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+// In-memory inverted index over the subject, organizer, location and
+// body preview of events, for searching without a request to Graph
+// Text is split into lowercase words with accents removed, and each
+// word maps to the IDs of the events containing it. The words are kept
+// sorted, so a query word matches every indexed word it is a prefix of,
+// letting results update as the user types. Events are added, replaced
+// and removed one at a time as they sync
+public class EventSearchIndex {
+    // An event matches a query if every query word matches one of its
+    // words. Exact matches rank above prefix matches
+    private static final int EXACT_MATCH_SCORE = 2;
+    private static final int PREFIX_MATCH_SCORE = 1;
+
+    private static class Document {
+        final EventSummary summary;
+        final Set<String> words;
+
+        Document(EventSummary summary, Set<String> words) {
+            this.summary = summary;
+            this.words = words;
+        }
+    }
+
+    private final Map<String, Document> mDocuments = new HashMap<>();
+    private final TreeMap<String, Set<String>> mPostings = new TreeMap<>();
+
+    // Adds the event, replacing any earlier version with the same ID
+    public synchronized void put(@NonNull Event event) {
+        if (event.id == null) {
+            return;
+        }
+
+        remove(event.id);
+
+        Set<String> words = new HashSet<>();
+        addWords(event.subject, words);
+        if (event.organizer != null && event.organizer.emailAddress != null) {
+            addWords(event.organizer.emailAddress.name, words);
+        }
+        if (event.location != null) {
+            addWords(event.location.displayName, words);
+        }
+        addWords(event.bodyPreview, words);
+
+        mDocuments.put(event.id, new Document(EventSummary.fromEvent(event), words));
+        for (String word : words) {
+            Set<String> ids = mPostings.get(word);
+            if (ids == null) {
+                ids = new HashSet<>();
+                mPostings.put(word, ids);
+            }
+            ids.add(event.id);
+        }
+    }
+
+    // Adds the event unless a version of it is already indexed, used
+    // for stored events that may be older than ones already synced
+    public synchronized void putIfAbsent(@NonNull Event event) {
+        if (event.id != null && !mDocuments.containsKey(event.id)) {
+            put(event);
+        }
+    }
+
+    public synchronized void remove(@NonNull String id) {
+        Document document = mDocuments.remove(id);
+        if (document == null) {
+            return;
+        }
+
+        for (String word : document.words) {
+            Set<String> ids = mPostings.get(word);
+            if (ids != null) {
+                ids.remove(id);
+                if (ids.isEmpty()) {
+                    mPostings.remove(word);
+                }
+            }
+        }
+    }
+
+    // Replaces the indexed events in the range with the complete
+    // results of a calendar view request, so events missing from
+    // the results are removed
+    public synchronized void replaceRange(long start, long end, @NonNull List<Event> events) {
+        List<String> removed = new ArrayList<>();
+        for (Map.Entry<String, Document> entry : mDocuments.entrySet()) {
+            EventSummary summary = entry.getValue().summary;
+            if (summary.getStart() != EventSummary.NO_TIME &&
+                    summary.getEnd() != EventSummary.NO_TIME &&
+                    EventColumnStore.overlaps(summary.getStart(), summary.getEnd(), start, end)) {
+                removed.add(entry.getKey());
+            }
+        }
+
+        for (String id : removed) {
+            remove(id);
+        }
+        for (Event event : events) {
+            put(event);
+        }
+    }
+
+    // Events matching every word of the query, best matches first,
+    // then in start order. Returns nothing for an empty query
+    @NonNull
+    public synchronized List<EventSummary> search(@NonNull String query, int limit) {
+        Set<String> queryWords = new HashSet<>();
+        addWords(query, queryWords);
+        if (queryWords.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        Map<String, Integer> scores = null;
+        for (String queryWord : queryWords) {
+            Map<String, Integer> wordScores = new HashMap<>();
+            for (Map.Entry<String, Set<String>> posting : getPrefixMatches(queryWord).entrySet()) {
+                int score = posting.getKey().equals(queryWord)
+                        ? EXACT_MATCH_SCORE : PREFIX_MATCH_SCORE;
+                for (String id : posting.getValue()) {
+                    Integer current = wordScores.get(id);
+                    if (current == null || current < score) {
+                        wordScores.put(id, score);
+                    }
+                }
+            }
+
+            if (scores == null) {
+                scores = wordScores;
+            } else {
+                // Keep only events that also match this word
+                Map<String, Integer> combined = new HashMap<>();
+                for (Map.Entry<String, Integer> entry : scores.entrySet()) {
+                    Integer score = wordScores.get(entry.getKey());
+                    if (score != null) {
+                        combined.put(entry.getKey(), entry.getValue() + score);
+                    }
+                }
+                scores = combined;
+            }
+
+            if (scores.isEmpty()) {
+                return Collections.emptyList();
+            }
+        }
+
+        final Map<String, Integer> finalScores = scores;
+        List<String> ids = new ArrayList<>(finalScores.keySet());
+        ids.sort((a, b) -> {
+            int byScore = Integer.compare(finalScores.get(b), finalScores.get(a));
+            return byScore != 0 ? byScore : EventSummary.START_ORDER.compare(
+                    mDocuments.get(a).summary, mDocuments.get(b).summary);
+        });
+
+        List<EventSummary> results = new ArrayList<>(Math.min(limit, ids.size()));
+        for (int i = 0; i < ids.size() && i < limit; i++) {
+            results.add(mDocuments.get(ids.get(i)).summary);
+        }
+        return results;
+    }
+
+    public synchronized int size() {
+        return mDocuments.size();
+    }
+
+    // Number of distinct indexed words
+    public synchronized int getWordCount() {
+        return mPostings.size();
+    }
+
+    public synchronized void clear() {
+        mDocuments.clear();
+        mPostings.clear();
+    }
+
+    // Splits text into lowercase words of letters and digits,
+    // with accents removed, so words typed without them still match
+    @NonNull
+    static List<String> getWords(@Nullable String text) {
+        List<String> words = new ArrayList<>();
+        if (text == null || text.isEmpty()) {
+            return words;
+        }
+
+        String normalized = Normalizer.normalize(text, Normalizer.Form.NFD);
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i < normalized.length(); i++) {
+            char c = normalized.charAt(i);
+            if (Character.getType(c) == Character.NON_SPACING_MARK) {
+                continue;
+            }
+
+            if (Character.isLetterOrDigit(c)) {
+                word.append(c);
+            } else if (word.length() > 0) {
+                words.add(word.toString().toLowerCase(Locale.ROOT));
+                word.setLength(0);
+            }
+        }
+        if (word.length() > 0) {
+            words.add(word.toString().toLowerCase(Locale.ROOT));
+        }
+        return words;
+    }
+
+    private static void addWords(@Nullable String text, Set<String> words) {
+        words.addAll(getWords(text));
+    }
+
+    // Indexed words starting with the prefix, including the prefix itself
+    private SortedMap<String, Set<String>> getPrefixMatches(String prefix) {
+        return mPostings.subMap(prefix, prefix + Character.MAX_VALUE);
+    }
+}
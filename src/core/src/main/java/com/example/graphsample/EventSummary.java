@@ -0,0 +1,154 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT License.
+
+package com.example.graphsample;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.microsoft.graph.models.DateTimeTimeZone;
+import com.microsoft.graph.models.Event;
+
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+// Immutable copy of the parts of an event the calendar shows
+// An SDK Event carries a backing store, an additional data map and
+// dozens of unused fields, so events kept in memory are converted
+// to summaries as soon as a page arrives
+// Start and end are epoch milliseconds, with the time zone Graph
+// reported them in kept for display. Organizer names are interned,
+// as a calendar usually has few organizers for many events
+public final class EventSummary {
+    // Start or end of an event Graph didn't return a valid time for
+    public static final long NO_TIME = Long.MIN_VALUE;
+
+    // Orders summaries by start time, ones without a start last
+    public static final Comparator<EventSummary> START_ORDER = Comparator.comparingLong(
+            summary -> summary.mStart == NO_TIME ? Long.MAX_VALUE : summary.mStart);
+
+    // Rough size of the object and its fields, on top
+    // of the strings counted in estimateBytes
+    private static final int OVERHEAD_BYTES = 64;
+
+    private final String mId;
+    private final String mChangeKey;
+    private final String mSubject;
+    private final String mOrganizer;
+    private final long mStart;
+    private final long mEnd;
+    private final ZoneId mZoneId;
+
+    public EventSummary(@Nullable String id, @Nullable String changeKey,
+                        @NonNull String subject, @NonNull String organizer,
+                        long start, long end, @NonNull ZoneId zoneId) {
+        mId = id;
+        mChangeKey = changeKey;
+        mSubject = subject;
+        mOrganizer = organizer;
+        mStart = start;
+        mEnd = end;
+        mZoneId = zoneId;
+    }
+
+    @NonNull
+    public static EventSummary fromEvent(@NonNull Event event) {
+        String organizer = event.organizer == null || event.organizer.emailAddress == null ||
+                event.organizer.emailAddress.name == null
+                ? "" : event.organizer.emailAddress.name.intern();
+
+        return new EventSummary(event.id, event.changeKey,
+                event.subject == null ? "" : event.subject,
+                organizer,
+                toEpochMillis(event.start),
+                toEpochMillis(event.end),
+                getZoneId(event.start));
+    }
+
+    // Converts a list of events, keeping their order
+    // The returned list can be modified
+    @NonNull
+    public static List<EventSummary> fromEvents(@NonNull List<Event> events) {
+        List<EventSummary> summaries = new ArrayList<>(events.size());
+        for (Event event : events) {
+            summaries.add(fromEvent(event));
+        }
+        return summaries;
+    }
+
+    @Nullable
+    public String getId() {
+        return mId;
+    }
+
+    @Nullable
+    public String getChangeKey() {
+        return mChangeKey;
+    }
+
+    @NonNull
+    public String getSubject() {
+        return mSubject;
+    }
+
+    @NonNull
+    public String getOrganizer() {
+        return mOrganizer;
+    }
+
+    // Epoch milliseconds, or NO_TIME
+    public long getStart() {
+        return mStart;
+    }
+
+    // Epoch milliseconds, or NO_TIME
+    public long getEnd() {
+        return mEnd;
+    }
+
+    // The time zone the event's times were returned in
+    @NonNull
+    public ZoneId getZoneId() {
+        return mZoneId;
+    }
+
+    // Approximate retained size, counting two bytes per character
+    // The organizer is shared with other summaries, so it isn't counted
+    public long estimateBytes() {
+        long chars = length(mId) + length(mChangeKey) + mSubject.length();
+        return OVERHEAD_BYTES + 2 * chars;
+    }
+
+    private static long toEpochMillis(@Nullable DateTimeTimeZone dateTime) {
+        if (dateTime == null || dateTime.dateTime == null) {
+            return NO_TIME;
+        }
+
+        try {
+            return EventDateFormatter.parseLocalDateTime(dateTime.dateTime)
+                    .atZone(getZoneId(dateTime)).toInstant().toEpochMilli();
+        } catch (RuntimeException exception) {
+            return NO_TIME;
+        }
+    }
+
+    // Graph returns times in the zone requested with the Prefer
+    // header, UTC is used if it isn't a zone we recognize
+    private static ZoneId getZoneId(@Nullable DateTimeTimeZone dateTime) {
+        if (dateTime == null || dateTime.timeZone == null) {
+            return ZoneIdResolver.getInstance().getZoneId("UTC");
+        }
+
+        try {
+            return ZoneIdResolver.getInstance().getZoneId(dateTime.timeZone);
+        } catch (RuntimeException exception) {
+            return ZoneIdResolver.getInstance().getZoneId("UTC");
+        }
+    }
+
+    private static int length(@Nullable String value) {
+        return value == null ? 0 : value.length();
+    }
+}
@@ -3,15 +3,25 @@
 
 package com.example.graphsample;
 
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
 import java.time.ZoneId;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Map;
 
 // Basic lookup for mapping Windows time zone identifiers to
-// IANA identifiers
+// IANA identifiers, and back
+// Resolved ZoneId values are cached by ZoneIdResolver
 // Mappings taken from
 // https://github.com/unicode-org/cldr/blob/master/common/supplemental/windowsZones.xml
 public class GraphToIana {
     private static final HashMap<String, String> timeZoneIdMap = new HashMap<>();
+    // Territory-specific mappings, keyed by "<Windows ID>|<territory>". As in
+    // CLDR the value lists every IANA zone in the territory, the first
+    // being the one used for the territory
+    private static final HashMap<String, String> territoryTimeZoneIdMap = new HashMap<>();
     static {
         timeZoneIdMap.put("Dateline Standard Time", "Etc/GMT+12");
         timeZoneIdMap.put("UTC-11", "Etc/GMT+11");
@@ -150,6 +160,78 @@ public class GraphToIana {
         timeZoneIdMap.put("Tonga Standard Time", "Pacific/Tongatapu");
         timeZoneIdMap.put("Samoa Standard Time", "Pacific/Apia");
         timeZoneIdMap.put("Line Islands Standard Time", "Pacific/Kiritimati");
+
+        // Territory-specific mappings for the most used time zones
+        territoryTimeZoneIdMap.put("Pacific Standard Time|CA", "America/Vancouver");
+        territoryTimeZoneIdMap.put("Pacific Standard Time|US", "America/Los_Angeles");
+        territoryTimeZoneIdMap.put("Mountain Standard Time|CA",
+                "America/Edmonton America/Cambridge_Bay America/Inuvik America/Yellowknife");
+        territoryTimeZoneIdMap.put("Mountain Standard Time|MX", "America/Ojinaga");
+        territoryTimeZoneIdMap.put("Mountain Standard Time|US", "America/Denver America/Boise");
+        territoryTimeZoneIdMap.put("US Mountain Standard Time|CA",
+                "America/Creston America/Dawson_Creek America/Fort_Nelson");
+        territoryTimeZoneIdMap.put("US Mountain Standard Time|MX", "America/Hermosillo");
+        territoryTimeZoneIdMap.put("US Mountain Standard Time|US", "America/Phoenix");
+        territoryTimeZoneIdMap.put("Central Standard Time|CA",
+                "America/Winnipeg America/Rainy_River America/Rankin_Inlet America/Resolute");
+        territoryTimeZoneIdMap.put("Central Standard Time|MX", "America/Matamoros");
+        territoryTimeZoneIdMap.put("Central Standard Time|US",
+                "America/Chicago America/Indiana/Knox America/Indiana/Tell_City America/Menominee America/North_Dakota/Beulah America/North_Dakota/Center America/North_Dakota/New_Salem");
+        territoryTimeZoneIdMap.put("Eastern Standard Time|BS", "America/Nassau");
+        territoryTimeZoneIdMap.put("Eastern Standard Time|CA",
+                "America/Toronto America/Iqaluit America/Montreal America/Nipigon America/Pangnirtung America/Thunder_Bay");
+        territoryTimeZoneIdMap.put("Eastern Standard Time|US",
+                "America/New_York America/Detroit America/Indiana/Petersburg America/Indiana/Vincennes America/Indiana/Winamac America/Kentucky/Monticello America/Louisville");
+        territoryTimeZoneIdMap.put("Atlantic Standard Time|BM", "Atlantic/Bermuda");
+        territoryTimeZoneIdMap.put("Atlantic Standard Time|CA",
+                "America/Halifax America/Glace_Bay America/Goose_Bay America/Moncton");
+        territoryTimeZoneIdMap.put("Atlantic Standard Time|GL", "America/Thule");
+        territoryTimeZoneIdMap.put("UTC|ZZ", "Etc/UTC Etc/GMT");
+        territoryTimeZoneIdMap.put("GMT Standard Time|ES", "Atlantic/Canary");
+        territoryTimeZoneIdMap.put("GMT Standard Time|FO", "Atlantic/Faeroe");
+        territoryTimeZoneIdMap.put("GMT Standard Time|GB", "Europe/London");
+        territoryTimeZoneIdMap.put("GMT Standard Time|GG", "Europe/Guernsey");
+        territoryTimeZoneIdMap.put("GMT Standard Time|IE", "Europe/Dublin");
+        territoryTimeZoneIdMap.put("GMT Standard Time|IM", "Europe/Isle_of_Man");
+        territoryTimeZoneIdMap.put("GMT Standard Time|JE", "Europe/Jersey");
+        territoryTimeZoneIdMap.put("GMT Standard Time|PT", "Europe/Lisbon Atlantic/Madeira");
+        territoryTimeZoneIdMap.put("W. Europe Standard Time|AD", "Europe/Andorra");
+        territoryTimeZoneIdMap.put("W. Europe Standard Time|AT", "Europe/Vienna");
+        territoryTimeZoneIdMap.put("W. Europe Standard Time|CH", "Europe/Zurich");
+        territoryTimeZoneIdMap.put("W. Europe Standard Time|DE", "Europe/Berlin Europe/Busingen");
+        territoryTimeZoneIdMap.put("W. Europe Standard Time|GI", "Europe/Gibraltar");
+        territoryTimeZoneIdMap.put("W. Europe Standard Time|IT", "Europe/Rome");
+        territoryTimeZoneIdMap.put("W. Europe Standard Time|LI", "Europe/Vaduz");
+        territoryTimeZoneIdMap.put("W. Europe Standard Time|LU", "Europe/Luxembourg");
+        territoryTimeZoneIdMap.put("W. Europe Standard Time|MC", "Europe/Monaco");
+        territoryTimeZoneIdMap.put("W. Europe Standard Time|MT", "Europe/Malta");
+        territoryTimeZoneIdMap.put("W. Europe Standard Time|NL", "Europe/Amsterdam");
+        territoryTimeZoneIdMap.put("W. Europe Standard Time|NO", "Europe/Oslo");
+        territoryTimeZoneIdMap.put("W. Europe Standard Time|SE", "Europe/Stockholm");
+        territoryTimeZoneIdMap.put("W. Europe Standard Time|SJ", "Arctic/Longyearbyen");
+        territoryTimeZoneIdMap.put("W. Europe Standard Time|SM", "Europe/San_Marino");
+        territoryTimeZoneIdMap.put("W. Europe Standard Time|VA", "Europe/Vatican");
+        territoryTimeZoneIdMap.put("Romance Standard Time|BE", "Europe/Brussels");
+        territoryTimeZoneIdMap.put("Romance Standard Time|DK", "Europe/Copenhagen");
+        territoryTimeZoneIdMap.put("Romance Standard Time|ES", "Europe/Madrid Africa/Ceuta");
+        territoryTimeZoneIdMap.put("Romance Standard Time|FR", "Europe/Paris");
+        territoryTimeZoneIdMap.put("Central Europe Standard Time|AL", "Europe/Tirane");
+        territoryTimeZoneIdMap.put("Central Europe Standard Time|CZ", "Europe/Prague");
+        territoryTimeZoneIdMap.put("Central Europe Standard Time|HU", "Europe/Budapest");
+        territoryTimeZoneIdMap.put("Central Europe Standard Time|ME", "Europe/Podgorica");
+        territoryTimeZoneIdMap.put("Central Europe Standard Time|RS", "Europe/Belgrade");
+        territoryTimeZoneIdMap.put("Central Europe Standard Time|SI", "Europe/Ljubljana");
+        territoryTimeZoneIdMap.put("Central Europe Standard Time|SK", "Europe/Bratislava");
+        territoryTimeZoneIdMap.put("India Standard Time|IN", "Asia/Calcutta");
+        territoryTimeZoneIdMap.put("China Standard Time|CN", "Asia/Shanghai");
+        territoryTimeZoneIdMap.put("China Standard Time|HK", "Asia/Hong_Kong");
+        territoryTimeZoneIdMap.put("China Standard Time|MO", "Asia/Macau");
+        territoryTimeZoneIdMap.put("Tokyo Standard Time|ID", "Asia/Jayapura");
+        territoryTimeZoneIdMap.put("Tokyo Standard Time|JP", "Asia/Tokyo");
+        territoryTimeZoneIdMap.put("Tokyo Standard Time|PW", "Pacific/Palau");
+        territoryTimeZoneIdMap.put("Tokyo Standard Time|TL", "Asia/Dili");
+        territoryTimeZoneIdMap.put("AUS Eastern Standard Time|AU",
+                "Australia/Sydney Australia/Melbourne");
     }
 
     public static String getIanaFromWindows(String windowsTimeZone) {
@@ -160,9 +242,42 @@ public class GraphToIana {
         return (iana == null) ? windowsTimeZone : iana;
     }
 
+    // Version that uses the zone CLDR maps the Windows time zone to
+    // within the given territory (ISO 3166 region code, e.g. "CA"),
+    // for example Pacific Standard Time is America/Vancouver in Canada
+    public static String getIanaFromWindows(String windowsTimeZone, @Nullable String territory) {
+        if (territory != null) {
+            String ianaIds = territoryTimeZoneIdMap.get(windowsTimeZone + "|" + territory);
+            if (ianaIds != null) {
+                int end = ianaIds.indexOf(' ');
+                return end < 0 ? ianaIds : ianaIds.substring(0, end);
+            }
+        }
+
+        return getIanaFromWindows(windowsTimeZone);
+    }
+
+    // Returns the Windows time zone for an IANA identifier,
+    // or null if there is no mapping
+    @Nullable
+    public static String getWindowsFromIana(String ianaTimeZone) {
+        return ZoneIdResolver.getInstance().getWindowsFromIana(ianaTimeZone);
+    }
+
     public static ZoneId getZoneIdFromWindows(String windowsTimeZone) {
-        String timeZoneId = getIanaFromWindows(windowsTimeZone);
+        return ZoneIdResolver.getInstance().getZoneId(windowsTimeZone);
+    }
+
+    // The default mappings, Windows ID to IANA ID
+    @NonNull
+    static Map<String, String> getMappings() {
+        return Collections.unmodifiableMap(timeZoneIdMap);
+    }
 
-        return ZoneId.of(timeZoneId);
+    // The territory-specific mappings, "<Windows ID>|<territory>"
+    // to a space-separated list of IANA IDs
+    @NonNull
+    static Map<String, String> getTerritoryMappings() {
+        return Collections.unmodifiableMap(territoryTimeZoneIdMap);
     }
 }
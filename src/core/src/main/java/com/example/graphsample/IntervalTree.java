@@ -0,0 +1,105 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT License.
+
+package com.example.graphsample;
+
+import androidx.annotation.NonNull;
+
+import java.util.function.IntPredicate;
+
+// Implicit interval tree over intervals sorted by start, shared by
+// EventIntervalIndex and EventColumnStore
+// The middle interval of each range is the root of that range, and
+// each root records the latest end in its range. A lookup skips any
+// range that ends before the query starts, and stops at the first
+// interval starting after the query ends, so it only touches the
+// intervals near the query, however long some of the others are
+final class IntervalTree {
+    private final long[] mStarts;
+    private final long[] mEnds;
+    private final long[] mMaxEnds;
+    private final boolean mIncludeEmptyAtStart;
+
+    // The starts must be sorted, and no end can be before its start
+    // With includeEmptyAtStart, intervals without a duration that start
+    // at the start of a query overlap it, as calendarView does
+    IntervalTree(@NonNull long[] starts, @NonNull long[] ends, boolean includeEmptyAtStart) {
+        mStarts = starts;
+        mEnds = ends;
+        mMaxEnds = new long[starts.length];
+        mIncludeEmptyAtStart = includeEmptyAtStart;
+        computeMaxEnds(0, starts.length);
+    }
+
+    static boolean overlaps(long intervalStart, long intervalEnd, long start, long end,
+                            boolean includeEmptyAtStart) {
+        return intervalStart < end &&
+                (intervalEnd > start || (includeEmptyAtStart && intervalStart == start));
+    }
+
+    // Passes the index of each interval overlapping the range to the
+    // visitor, in start order, until the visitor returns false
+    // Returns false if the visitor stopped the lookup
+    boolean forEachOverlapping(long start, long end, @NonNull IntPredicate visitor) {
+        return visit(0, mStarts.length, start, end, visitor);
+    }
+
+    // Number of intervals overlapping the range
+    int count(long start, long end) {
+        int[] count = { 0 };
+        forEachOverlapping(start, end, index -> {
+            count[0]++;
+            return true;
+        });
+        return count[0];
+    }
+
+    private long computeMaxEnds(int low, int high) {
+        if (low >= high) {
+            return Long.MIN_VALUE;
+        }
+
+        int middle = (low + high) >>> 1;
+        long maxEnd = Math.max(mEnds[middle], Math.max(
+                computeMaxEnds(low, middle), computeMaxEnds(middle + 1, high)));
+        mMaxEnds[middle] = maxEnd;
+        return maxEnd;
+    }
+
+    private boolean visit(int low, int high, long start, long end, IntPredicate visitor) {
+        if (low >= high || endsBefore(low, high, start)) {
+            return true;
+        }
+
+        int middle = (low + high) >>> 1;
+        if (!visit(low, middle, start, end, visitor)) {
+            return false;
+        }
+
+        // Intervals after the middle start later, so are only
+        // worth checking if the middle starts before the end
+        if (mStarts[middle] >= end) {
+            return true;
+        }
+
+        if (overlaps(mStarts[middle], mEnds[middle], start, end, mIncludeEmptyAtStart) &&
+                !visitor.test(middle)) {
+            return false;
+        }
+
+        return visit(middle + 1, high, start, end, visitor);
+    }
+
+    // True if nothing from low to high can overlap a query
+    // starting at start, using the latest end of the range
+    private boolean endsBefore(int low, int high, long start) {
+        long maxEnd = mMaxEnds[(low + high) >>> 1];
+        if (!mIncludeEmptyAtStart) {
+            return maxEnd <= start;
+        }
+
+        // An interval without a duration at the start still overlaps,
+        // the last start of the range shows whether there is one
+        return maxEnd < start || (maxEnd == start && mStarts[high - 1] < start);
+    }
+}
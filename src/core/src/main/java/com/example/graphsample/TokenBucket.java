@@ -0,0 +1,86 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT License.
+
+package com.example.graphsample;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+// Rate limiter shared by all Graph requests
+// Holds up to capacity tokens, refilled at a steady rate. Each request
+// takes one token, and is told how long to wait if none are left, so
+// requests beyond the rate are spread out in the order they arrived
+// pause() stops the refill for a while, used when Graph asks for a
+// Retry-After delay so that every request waits, not just the one
+// that was throttled
+public class TokenBucket {
+    private final double mCapacity;
+    private final double mTokensPerMilli;
+    private final LongSupplier mClock;
+
+    // Can go below zero, by the number of requests already
+    // waiting for a token. Both are guarded by this
+    private double mTokens;
+    // Time the tokens were last refilled, or the end of
+    // the current pause, which can be in the future
+    private long mRefillTime;
+
+    public TokenBucket(int capacity, double tokensPerSecond) {
+        this(capacity, tokensPerSecond, () -> TimeUnit.NANOSECONDS.toMillis(System.nanoTime()));
+    }
+
+    // Version with a clock in milliseconds, for tests
+    TokenBucket(int capacity, double tokensPerSecond, LongSupplier clock) {
+        if (capacity < 1 || tokensPerSecond <= 0) {
+            throw new IllegalArgumentException("Capacity and rate must be positive");
+        }
+
+        mCapacity = capacity;
+        mTokensPerMilli = tokensPerSecond / 1000;
+        mClock = clock;
+        mTokens = capacity;
+        mRefillTime = clock.getAsLong();
+    }
+
+    // Takes a token, returning how many milliseconds the caller
+    // must wait before sending its request, or 0 to send it now
+    public synchronized long acquire() {
+        long now = mClock.getAsLong();
+        refill(now);
+
+        mTokens -= 1;
+        long pause = Math.max(0, mRefillTime - now);
+        if (mTokens >= 0) {
+            return pause;
+        }
+
+        return pause + (long) Math.ceil(-mTokens / mTokensPerMilli);
+    }
+
+    // Stops handing out tokens for the given time. Tokens left over are
+    // dropped, so requests resume at the refill rate after the pause
+    // instead of all at once
+    public synchronized void pause(long delayMillis) {
+        long now = mClock.getAsLong();
+        refill(now);
+
+        long until = now + delayMillis;
+        if (until > mRefillTime) {
+            mRefillTime = until;
+            mTokens = Math.min(mTokens, 0);
+        }
+    }
+
+    // Number of tokens available now, negative if requests are waiting
+    public synchronized double getAvailableTokens() {
+        refill(mClock.getAsLong());
+        return mTokens;
+    }
+
+    private void refill(long now) {
+        if (now > mRefillTime) {
+            mTokens = Math.min(mCapacity, mTokens + (now - mRefillTime) * mTokensPerMilli);
+            mRefillTime = now;
+        }
+    }
+}
@@ -0,0 +1,159 @@
+// Copyright (c) Microsoft Corporation.
+// Licensed under the MIT License.
+
+package com.example.graphsample;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.time.ZoneId;
+import java.time.zone.ZoneRules;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Singleton class - caches resolved time zones
+// Graph returns a Windows or IANA time zone name with every date, and
+// resolving it with ZoneId.of parses the name and loads the zone's rules
+// each time. Names are resolved once here and the ZoneId and ZoneRules
+// are reused, so repeated lookups are a single map read
+// Also maps IANA names back to Windows names, using the territory
+// mappings from GraphToIana and falling back to comparing zone rules
+// for aliases such as Asia/Kolkata
+public class ZoneIdResolver {
+    // Cached in mWindowsByIana for IANA names without a Windows zone
+    private static final String NO_MAPPING = "";
+
+    private static ZoneIdResolver INSTANCE = null;
+
+    private final Map<String, ZoneId> mZoneIds = new ConcurrentHashMap<>();
+    private final Map<String, ZoneRules> mRules = new ConcurrentHashMap<>();
+    private final Map<String, String> mWindowsByIana = new ConcurrentHashMap<>();
+    private volatile boolean mWarmed = false;
+
+    private ZoneIdResolver() {
+        // Territory mappings first, so the default mapping
+        // wins where both list the same zone
+        Map<String, String> reverse = new HashMap<>();
+        for (Map.Entry<String, String> entry : GraphToIana.getTerritoryMappings().entrySet()) {
+            String windowsTimeZone = entry.getKey().substring(0, entry.getKey().indexOf('|'));
+            for (String ianaTimeZone : entry.getValue().split(" ")) {
+                reverse.put(ianaTimeZone, windowsTimeZone);
+            }
+        }
+        for (Map.Entry<String, String> entry : GraphToIana.getMappings().entrySet()) {
+            reverse.put(entry.getValue(), entry.getKey());
+        }
+        mWindowsByIana.putAll(reverse);
+    }
+
+    public static synchronized ZoneIdResolver getInstance() {
+        if (INSTANCE == null) {
+            INSTANCE = new ZoneIdResolver();
+        }
+
+        return INSTANCE;
+    }
+
+    // Resolves a Windows or IANA time zone name
+    // Throws DateTimeException for names that are not valid zones
+    @NonNull
+    public ZoneId getZoneId(@NonNull String timeZone) {
+        ZoneId zoneId = mZoneIds.get(timeZone);
+        if (zoneId == null) {
+            zoneId = ZoneId.of(GraphToIana.getIanaFromWindows(timeZone));
+            mZoneIds.put(timeZone, zoneId);
+        }
+
+        return zoneId;
+    }
+
+    // The rules of a Windows or IANA time zone, for computing offsets
+    // without going through ZoneId
+    @NonNull
+    public ZoneRules getRules(@NonNull String timeZone) {
+        ZoneRules rules = mRules.get(timeZone);
+        if (rules == null) {
+            rules = getZoneId(timeZone).getRules();
+            mRules.put(timeZone, rules);
+        }
+
+        return rules;
+    }
+
+    // Returns the Windows time zone for an IANA name, or null if none
+    // matches. Names that are already Windows time zones are returned as is
+    @Nullable
+    public String getWindowsFromIana(@NonNull String ianaTimeZone) {
+        if (GraphToIana.getMappings().containsKey(ianaTimeZone)) {
+            return ianaTimeZone;
+        }
+
+        String windowsTimeZone = mWindowsByIana.get(ianaTimeZone);
+        if (windowsTimeZone == null) {
+            windowsTimeZone = findWindowsByRules(ianaTimeZone);
+            mWindowsByIana.put(ianaTimeZone, windowsTimeZone);
+        }
+
+        return windowsTimeZone.equals(NO_MAPPING) ? null : windowsTimeZone;
+    }
+
+    // Aliases like Asia/Kolkata (Asia/Calcutta in CLDR) and US/Pacific
+    // have the same rules as the zone they link to
+    private String findWindowsByRules(String ianaTimeZone) {
+        ZoneRules rules;
+        try {
+            rules = getRules(ianaTimeZone);
+        } catch (RuntimeException exception) {
+            return NO_MAPPING;
+        }
+
+        // Sorted so the result doesn't depend on map order
+        for (Map.Entry<String, String> entry : new TreeMap<>(GraphToIana.getMappings()).entrySet()) {
+            try {
+                if (getRules(entry.getKey()).equals(rules)) {
+                    return entry.getKey();
+                }
+            } catch (RuntimeException exception) {
+                // Zone not available in this time zone database
+            }
+        }
+
+        return NO_MAPPING;
+    }
+
+    // Resolves every mapped time zone, starting with the device's,
+    // so later lookups don't load zone rules
+    public void warm() {
+        if (mWarmed) {
+            return;
+        }
+
+        getRules(ZoneId.systemDefault().getId());
+        for (Map.Entry<String, String> entry : GraphToIana.getMappings().entrySet()) {
+            try {
+                ZoneRules rules = getRules(entry.getKey());
+                // Share the resolved values with the IANA name
+                mZoneIds.put(entry.getValue(), getZoneId(entry.getKey()));
+                mRules.put(entry.getValue(), rules);
+            } catch (RuntimeException exception) {
+                // Zone not available in this time zone database
+            }
+        }
+
+        mWarmed = true;
+    }
+
+    // Runs warm() on a low priority background thread
+    public void warmInBackground() {
+        if (mWarmed) {
+            return;
+        }
+
+        Thread thread = new Thread(this::warm, "ZoneIdWarmUp");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+    }
+}
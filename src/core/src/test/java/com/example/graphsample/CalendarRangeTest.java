@@ -0,0 +1,37 @@
+package com.example.graphsample;
+
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+
+import static org.junit.Assert.*;
+
+public class CalendarRangeTest {
+    private static final ZoneId PACIFIC = ZoneId.of("America/Los_Angeles");
+
+    @Test
+    public void week_startsOnSundayAtLocalMidnight() {
+        CalendarRange week = CalendarRange.containing(CalendarRange.Mode.WEEK, PACIFIC,
+                LocalDate.of(2023, 3, 15));
+
+        assertEquals(LocalDate.of(2023, 3, 12), week.getFirstDay());
+        assertEquals(ZonedDateTime.of(2023, 3, 12, 8, 0, 0, 0, ZoneId.of("UTC")), week.getStart());
+        // Daylight saving time started on March 12
+        assertEquals(ZonedDateTime.of(2023, 3, 19, 7, 0, 0, 0, ZoneId.of("UTC")), week.getEnd());
+    }
+
+    @Test
+    public void month_navigation() {
+        CalendarRange month = CalendarRange.containing(CalendarRange.Mode.MONTH, PACIFIC,
+                LocalDate.of(2023, 1, 31));
+
+        assertEquals(LocalDate.of(2023, 1, 1), month.getFirstDay());
+        assertEquals(LocalDate.of(2023, 2, 1), month.next().getFirstDay());
+        assertEquals(LocalDate.of(2022, 12, 1), month.previous().getFirstDay());
+        assertEquals(month, month.next().previous());
+        assertEquals(LocalDate.of(2023, 1, 1),
+                month.withMode(CalendarRange.Mode.WEEK).getFirstDay());
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.graphsample;
+
+import org.junit.Test;
+
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class CalendarWindowCacheTest {
+    private static final String TIME_ZONE = "UTC";
+    private static final ZonedDateTime WEEK_1 = ZonedDateTime.of(2023, 1, 1, 0, 0, 0, 0,
+            ZoneId.of("UTC"));
+    private static final ZonedDateTime WEEK_2 = WEEK_1.plusDays(7);
+    private static final ZonedDateTime WEEK_3 = WEEK_1.plusDays(14);
+
+    private static EventSummary createEvent(String id, ZonedDateTime start) {
+        long startMillis = start.toInstant().toEpochMilli();
+        return TestEvents.createSummary(id, startMillis, startMillis + TestEvents.HOUR);
+    }
+
+    @Test
+    public void get_mergesAdjacentWindows() {
+        CalendarWindowCache cache = new CalendarWindowCache();
+        cache.put(WEEK_2, WEEK_3, TIME_ZONE,
+                Collections.singletonList(createEvent("b", WEEK_2.plusDays(1))));
+        cache.put(WEEK_1, WEEK_2, TIME_ZONE,
+                Collections.singletonList(createEvent("a", WEEK_1.plusDays(1))));
+
+        assertEquals(1, cache.getWindowCount());
+        assertEquals("ab", TestEvents.getIds(cache.get(WEEK_1, WEEK_3, TIME_ZONE)));
+        assertEquals("b", TestEvents.getIds(cache.get(WEEK_2, WEEK_3, TIME_ZONE)));
+        assertNull(cache.get(WEEK_1, WEEK_3, "Pacific Standard Time"));
+        assertNull(cache.get(WEEK_1, WEEK_3.plusDays(1), TIME_ZONE));
+    }
+
+    @Test
+    public void put_replacesEventsInRange() {
+        CalendarWindowCache cache = new CalendarWindowCache();
+        cache.put(WEEK_1, WEEK_3, TIME_ZONE, Arrays.asList(
+                createEvent("a", WEEK_1.plusDays(1)),
+                createEvent("b", WEEK_2.plusDays(1))));
+        cache.put(WEEK_2, WEEK_3, TIME_ZONE,
+                Collections.singletonList(createEvent("c", WEEK_2.plusDays(2))));
+
+        assertEquals("ac", TestEvents.getIds(cache.get(WEEK_1, WEEK_3, TIME_ZONE)));
+    }
+
+    @Test
+    public void add_insertsIntoOverlappingWindows() {
+        CalendarWindowCache cache = new CalendarWindowCache();
+        cache.put(WEEK_1, WEEK_2, TIME_ZONE,
+                Collections.singletonList(createEvent("b", WEEK_1.plusDays(2))));
+        cache.put(WEEK_3, WEEK_3.plusDays(7), TIME_ZONE, Collections.emptyList());
+        long version = cache.getVersion();
+
+        cache.add(createEvent("a", WEEK_1.plusDays(1)));
+        // Replaces the copy with the same ID
+        cache.add(createEvent("a", WEEK_1.plusDays(3)));
+
+        assertEquals("ba", TestEvents.getIds(cache.get(WEEK_1, WEEK_2, TIME_ZONE)));
+        assertEquals("", TestEvents.getIds(cache.get(WEEK_3, WEEK_3.plusDays(7), TIME_ZONE)));
+        assertEquals(2, cache.getAllEvents().size());
+        assertNotEquals(version, cache.getVersion());
+    }
+
+    @Test
+    public void put_evictsLeastRecentlyUsed() {
+        EventSummary event = createEvent("a", WEEK_1.plusDays(1));
+        long windowBytes = EventColumnStore.build(Collections.singletonList(event), 0, 0)
+                .estimateBytes();
+        CalendarWindowCache cache = new CalendarWindowCache(2 * windowBytes);
+
+        cache.put(WEEK_1, WEEK_2, TIME_ZONE, Collections.singletonList(event));
+        cache.put(WEEK_1, WEEK_2, "Pacific Standard Time", Collections.singletonList(event));
+        cache.get(WEEK_1, WEEK_2, TIME_ZONE);
+        cache.put(WEEK_1, WEEK_2, "Eastern Standard Time", Collections.singletonList(event));
+
+        assertEquals(2, cache.getWindowCount());
+        assertNotNull(cache.get(WEEK_1, WEEK_2, TIME_ZONE));
+        assertNull(cache.get(WEEK_1, WEEK_2, "Pacific Standard Time"));
+        assertTrue(cache.getSizeBytes() <= cache.getMaxBytes());
+    }
+
+    @Test
+    public void getAllEvents_returnsEachEventOnce() {
+        CalendarWindowCache cache = new CalendarWindowCache();
+        long version = cache.getVersion();
+        cache.put(WEEK_1, WEEK_2, TIME_ZONE,
+                Collections.singletonList(createEvent("a", WEEK_1.plusDays(1))));
+        cache.put(WEEK_1, WEEK_2, "Pacific Standard Time",
+                Collections.singletonList(createEvent("a", WEEK_1.plusDays(1))));
+        cache.put(WEEK_2, WEEK_3, "Pacific Standard Time",
+                Collections.singletonList(createEvent("b", WEEK_2.plusDays(1))));
+
+        assertEquals(2, cache.getAllEvents().size());
+        assertNotEquals(version, cache.getVersion());
+    }
+}
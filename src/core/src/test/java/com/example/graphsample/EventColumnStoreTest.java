@@ -0,0 +1,92 @@
+package com.example.graphsample;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class EventColumnStoreTest {
+    private static final long HOUR = TestEvents.HOUR;
+
+    @Test
+    public void query_findsOverlappingEventsInStartOrder() {
+        EventColumnStore store = EventColumnStore.build(Arrays.asList(
+                TestEvents.createSummary("c", "Standup", 10 * HOUR, 11 * HOUR),
+                // Long event starting well before the range
+                TestEvents.createSummary("a", "Offsite", 0, 48 * HOUR),
+                TestEvents.createSummary("b", "Standup", 2 * HOUR, 3 * HOUR),
+                TestEvents.createSummary("d", "Review", 20 * HOUR, 20 * HOUR)), 0, 100 * HOUR);
+
+        assertEquals(4, store.size());
+        assertEquals("ac", TestEvents.getIds(store.query(9 * HOUR, 12 * HOUR)));
+        // Ends are exclusive, zero-length events at the start are included
+        assertEquals("a", TestEvents.getIds(store.query(3 * HOUR, 10 * HOUR)));
+        assertEquals("ad", TestEvents.getIds(store.query(20 * HOUR, 21 * HOUR)));
+        assertEquals(0, store.count(50 * HOUR, 60 * HOUR));
+        assertEquals(4, store.count(0, 100 * HOUR));
+    }
+
+    @Test
+    public void query_matchesLinearScan() {
+        // Mostly short events, some zero-length, and a few
+        // that span much of the range
+        Random random = new Random(42);
+        List<EventSummary> events = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            long start = random.nextInt(1000) * HOUR;
+            events.add(TestEvents.createSummary(String.valueOf(i), start,
+                    start + (random.nextInt(20) == 0 ? 500 : random.nextInt(4)) * HOUR));
+        }
+        EventColumnStore store = EventColumnStore.build(events, 0, 1000 * HOUR);
+
+        for (int q = 0; q < 200; q++) {
+            long start = random.nextInt(1000) * HOUR;
+            long end = start + (1 + random.nextInt(5)) * HOUR;
+
+            int expected = 0;
+            for (EventSummary event : events) {
+                if (EventColumnStore.overlaps(event.getStart(), event.getEnd(), start, end)) {
+                    expected++;
+                }
+            }
+            List<EventSummary> found = store.query(start, end);
+            assertEquals(expected, found.size());
+            assertEquals(expected, store.count(start, end));
+            for (int i = 1; i < found.size(); i++) {
+                assertTrue(found.get(i - 1).getStart() <= found.get(i).getStart());
+            }
+        }
+    }
+
+    @Test
+    public void build_storesEachStringOnce() {
+        EventColumnStore store = EventColumnStore.build(Arrays.asList(
+                TestEvents.createSummary("a", "Standup", 0, HOUR),
+                TestEvents.createSummary("b", "Standup", HOUR, 2 * HOUR),
+                TestEvents.createSummary("c", "Organizer", 2 * HOUR, 3 * HOUR)), 0, 0);
+
+        // "Standup" and "Organizer", shared by subjects and organizers
+        assertEquals(2, store.getStringCount());
+        EventSummary event = store.get(1);
+        assertEquals("b", event.getId());
+        assertEquals("ck", event.getChangeKey());
+        assertEquals("Standup", event.getSubject());
+        assertEquals("Organizer", event.getOrganizer());
+        assertEquals(TestEvents.UTC, event.getZoneId());
+    }
+
+    @Test
+    public void build_keepsMissingTimes() {
+        EventColumnStore store = EventColumnStore.build(Arrays.asList(
+                TestEvents.createSummary("a", "", EventSummary.NO_TIME, EventSummary.NO_TIME)),
+                5 * HOUR, 6 * HOUR);
+
+        assertEquals(1, store.count(5 * HOUR, 6 * HOUR));
+        assertEquals(EventSummary.NO_TIME, store.get(0).getStart());
+        assertEquals(EventSummary.NO_TIME, store.get(0).getEnd());
+    }
+}
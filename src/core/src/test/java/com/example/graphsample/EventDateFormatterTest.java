@@ -0,0 +1,37 @@
+package com.example.graphsample;
+
+import org.junit.Test;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.FormatStyle;
+
+import static org.junit.Assert.*;
+
+public class EventDateFormatterTest {
+    @Test
+    public void parseLocalDateTime_matchesIsoParser() {
+        String[] values = {
+                "2023-01-19T13:30:00.0000000",
+                "2023-01-19T13:30:00",
+                "2023-01-19T13:30:00.5",
+                "2023-12-31T23:59:59.123456789",
+                "2023-01-19T13:30"
+        };
+        for (String value : values) {
+            assertEquals(value, LocalDateTime.parse(value),
+                    EventDateFormatter.parseLocalDateTime(value));
+        }
+    }
+
+    @Test
+    public void getLocalDateTimeString_matchesLocalizedFormat() {
+        LocalDateTime dateTime = LocalDateTime.of(2023, 1, 19, 13, 30);
+        String expected = String.format("%s %s",
+                dateTime.format(DateTimeFormatter.ofLocalizedDate(FormatStyle.MEDIUM)),
+                dateTime.format(DateTimeFormatter.ofLocalizedTime(FormatStyle.SHORT)));
+
+        assertEquals(expected, EventDateFormatter.getLocalDateTimeString(
+                "2023-01-19T13:30:00.0000000", "Pacific Standard Time"));
+    }
+}
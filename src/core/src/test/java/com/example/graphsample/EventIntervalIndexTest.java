@@ -0,0 +1,59 @@
+package com.example.graphsample;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class EventIntervalIndexTest {
+    private static final long HOUR = TestEvents.HOUR;
+
+    @Test
+    public void getOverlapping_findsOverlappingEvents() {
+        EventIntervalIndex index = EventIntervalIndex.build(Arrays.asList(
+                TestEvents.createSummary("c", 9 * HOUR, 10 * HOUR),
+                // All-week event starting before everything else
+                TestEvents.createSummary("a", 0, 7 * 24 * HOUR),
+                TestEvents.createSummary("b", 8 * HOUR, 9 * HOUR),
+                TestEvents.createSummary("x", EventSummary.NO_TIME, EventSummary.NO_TIME)));
+
+        assertEquals(3, index.size());
+        assertEquals("ab", TestEvents.getIds(index.getOverlapping(8 * HOUR + 1, 9 * HOUR)));
+        // Back-to-back events don't conflict
+        assertEquals("a", TestEvents.getIds(index.getOverlapping(10 * HOUR, 11 * HOUR)));
+        assertEquals("", TestEvents.getIds(index.getOverlapping(8 * 24 * HOUR, 9 * 24 * HOUR)));
+        assertEquals("", TestEvents.getIds(index.getOverlapping(9 * HOUR, 9 * HOUR)));
+        assertTrue(index.hasOverlap(9 * HOUR, 9 * HOUR + 1));
+        assertFalse(index.hasOverlap(-HOUR, 0));
+    }
+
+    @Test
+    public void getOverlapping_matchesLinearScan() {
+        Random random = new Random(42);
+        List<EventSummary> events = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            long start = random.nextInt(1000) * HOUR;
+            events.add(TestEvents.createSummary(String.valueOf(i), start,
+                    start + (random.nextInt(20) == 0 ? 100 : random.nextInt(4)) * HOUR));
+        }
+        EventIntervalIndex index = EventIntervalIndex.build(events);
+
+        for (int q = 0; q < 200; q++) {
+            long start = random.nextInt(1000) * HOUR;
+            long end = start + (1 + random.nextInt(5)) * HOUR;
+
+            int expected = 0;
+            for (EventSummary event : events) {
+                if (event.getStart() < end && event.getEnd() > start) {
+                    expected++;
+                }
+            }
+            assertEquals(expected, index.getOverlapping(start, end).size());
+            assertEquals(expected > 0, index.hasOverlap(start, end));
+        }
+    }
+}
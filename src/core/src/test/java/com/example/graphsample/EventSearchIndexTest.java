@@ -0,0 +1,76 @@
+package com.example.graphsample;
+
+import com.microsoft.graph.models.Event;
+
+import org.junit.Test;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class EventSearchIndexTest {
+    private static final LocalDateTime DAY = LocalDateTime.of(2023, 1, 19, 0, 0);
+
+    private static Event createEvent(String id, String subject, String organizer,
+                                     String location, String bodyPreview, int hour) {
+        return TestEvents.createEvent(id, subject, organizer, location, bodyPreview,
+                DAY.plusHours(hour), DAY.plusHours(hour + 1));
+    }
+
+    private static EventSearchIndex createIndex() {
+        EventSearchIndex index = new EventSearchIndex();
+        index.put(createEvent("a", "Quarterly planning", "Megan Bowen", "Caf\u00e9 34",
+                "Agenda for Q3", 9));
+        index.put(createEvent("b", "Plan review", "Alex Wilber", "Room 1",
+                "Bring the quarterly numbers", 10));
+        index.put(createEvent("c", "Lunch", "Megan Bowen", "Cafeteria", "", 12));
+        return index;
+    }
+
+    @Test
+    public void search_matchesWordsAndPrefixes() {
+        EventSearchIndex index = createIndex();
+
+        // Exact matches rank first, then start order
+        assertEquals("ba", TestEvents.getIds(index.search("plan", 10)));
+        assertEquals("ab", TestEvents.getIds(index.search("quarterly", 10)));
+        // Every word must match, in any field
+        assertEquals("a", TestEvents.getIds(index.search("megan plan", 10)));
+        assertEquals("ac", TestEvents.getIds(index.search("MEG", 10)));
+        // Accents are ignored
+        assertEquals("ac", TestEvents.getIds(index.search("cafe", 10)));
+        assertEquals("", TestEvents.getIds(index.search("dinner", 10)));
+        assertEquals("", TestEvents.getIds(index.search("  ", 10)));
+        assertEquals(1, index.search("megan", 1).size());
+    }
+
+    @Test
+    public void put_replacesAndRemovesEvents() {
+        EventSearchIndex index = createIndex();
+
+        index.put(createEvent("c", "Team dinner", "Megan Bowen", "", "", 18));
+        assertEquals("", TestEvents.getIds(index.search("lunch", 10)));
+        assertEquals("c", TestEvents.getIds(index.search("dinner", 10)));
+
+        index.remove("c");
+        assertEquals(2, index.size());
+        assertEquals("", TestEvents.getIds(index.search("dinner", 10)));
+
+        // A later sync of the morning drops events no longer in it
+        long start = DAY.toInstant(ZoneOffset.UTC).toEpochMilli();
+        index.replaceRange(start, start + 11 * 60 * 60 * 1000, Collections.singletonList(
+                createEvent("d", "Standup", "Alex Wilber", "", "", 9)));
+        assertEquals("d", TestEvents.getIds(index.search("standup", 10)));
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    public void getWords_splitsAndNormalizes() {
+        assertEquals(Arrays.asList("q3", "cafe", "a", "b"),
+                EventSearchIndex.getWords("Q3 \u2014 Caf\u00e9 (A/B)"));
+        assertTrue(EventSearchIndex.getWords(null).isEmpty());
+    }
+}
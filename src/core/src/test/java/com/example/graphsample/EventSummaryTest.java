@@ -0,0 +1,62 @@
+package com.example.graphsample;
+
+import com.microsoft.graph.models.DateTimeTimeZone;
+import com.microsoft.graph.models.EmailAddress;
+import com.microsoft.graph.models.Event;
+import com.microsoft.graph.models.Recipient;
+
+import org.junit.Test;
+
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+
+import static org.junit.Assert.*;
+
+public class EventSummaryTest {
+    private static Event createEvent(String organizer) {
+        Event event = new Event();
+        event.id = "AAMkAGI2TGuLAAA=";
+        event.subject = "Planning";
+        event.organizer = new Recipient();
+        event.organizer.emailAddress = new EmailAddress();
+        event.organizer.emailAddress.name = organizer;
+        event.start = new DateTimeTimeZone();
+        event.start.dateTime = "2023-01-19T13:30:00.0000000";
+        event.start.timeZone = "Pacific Standard Time";
+        event.end = new DateTimeTimeZone();
+        event.end.dateTime = "2023-01-19T14:00:00.0000000";
+        event.end.timeZone = "Pacific Standard Time";
+        return event;
+    }
+
+    @Test
+    public void fromEvent_convertsTimesToEpochMillis() {
+        EventSummary summary = EventSummary.fromEvent(createEvent("Megan Bowen"));
+
+        ZoneId pacific = ZoneId.of("America/Los_Angeles");
+        assertEquals(pacific, summary.getZoneId());
+        assertEquals(ZonedDateTime.of(2023, 1, 19, 13, 30, 0, 0, pacific)
+                .toInstant().toEpochMilli(), summary.getStart());
+        assertEquals(30 * 60 * 1000, summary.getEnd() - summary.getStart());
+        assertEquals("Planning", summary.getSubject());
+    }
+
+    @Test
+    public void fromEvent_sharesOrganizerNames() {
+        EventSummary first = EventSummary.fromEvent(createEvent(new String("Megan Bowen")));
+        EventSummary second = EventSummary.fromEvent(createEvent(new String("Megan Bowen")));
+
+        assertSame(first.getOrganizer(), second.getOrganizer());
+    }
+
+    @Test
+    public void fromEvent_handlesMissingTimes() {
+        Event event = createEvent("Megan Bowen");
+        event.start = null;
+        event.end.dateTime = "not a date";
+
+        EventSummary summary = EventSummary.fromEvent(event);
+        assertEquals(EventSummary.NO_TIME, summary.getStart());
+        assertEquals(EventSummary.NO_TIME, summary.getEnd());
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.graphsample;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class IntervalTreeTest {
+    private static List<Integer> getOverlapping(IntervalTree tree, long start, long end) {
+        List<Integer> indexes = new ArrayList<>();
+        tree.forEachOverlapping(start, end, indexes::add);
+        return indexes;
+    }
+
+    @Test
+    public void forEachOverlapping_emptyIntervalsOnlyWhenIncluded() {
+        long[] starts = { 0, 5, 10 };
+        long[] ends = { 20, 5, 12 };
+
+        IntervalTree strict = new IntervalTree(starts, ends, false);
+        IntervalTree inclusive = new IntervalTree(starts, ends, true);
+
+        assertEquals(Arrays.asList(0), getOverlapping(strict, 5, 6));
+        assertEquals(Arrays.asList(0, 1), getOverlapping(inclusive, 5, 6));
+        // Intervals ending as the query starts never overlap
+        assertEquals(Arrays.asList(), getOverlapping(strict, 20, 30));
+        assertEquals(Arrays.asList(0, 2), getOverlapping(strict, 11, 15));
+    }
+
+    @Test
+    public void forEachOverlapping_stopsWhenVisitorReturnsFalse() {
+        IntervalTree tree = new IntervalTree(new long[] { 0, 1, 2 }, new long[] { 10, 10, 10 },
+                false);
+        List<Integer> visited = new ArrayList<>();
+
+        assertFalse(tree.forEachOverlapping(5, 6, index -> {
+            visited.add(index);
+            return false;
+        }));
+        assertEquals(Arrays.asList(0), visited);
+        assertTrue(tree.forEachOverlapping(20, 30, index -> false));
+    }
+
+    @Test
+    public void count_matchesLinearScan() {
+        Random random = new Random(7);
+        int size = 1000;
+        long[] starts = new long[size];
+        long[] ends = new long[size];
+        for (int i = 0; i < size; i++) {
+            starts[i] = random.nextInt(500);
+        }
+        Arrays.sort(starts);
+        for (int i = 0; i < size; i++) {
+            ends[i] = starts[i] + (random.nextInt(20) == 0 ? 300 : random.nextInt(3));
+        }
+
+        for (boolean includeEmpty : new boolean[] { false, true }) {
+            IntervalTree tree = new IntervalTree(starts, ends, includeEmpty);
+            for (int q = 0; q < 200; q++) {
+                long start = random.nextInt(500);
+                long end = start + 1 + random.nextInt(5);
+
+                List<Integer> expected = new ArrayList<>();
+                for (int i = 0; i < size; i++) {
+                    if (IntervalTree.overlaps(starts[i], ends[i], start, end, includeEmpty)) {
+                        expected.add(i);
+                    }
+                }
+                assertEquals(expected, getOverlapping(tree, start, end));
+                assertEquals(expected.size(), tree.count(start, end));
+            }
+        }
+    }
+}
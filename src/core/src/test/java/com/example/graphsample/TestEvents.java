@@ -0,0 +1,58 @@
+package com.example.graphsample;
+
+import com.microsoft.graph.models.DateTimeTimeZone;
+import com.microsoft.graph.models.EmailAddress;
+import com.microsoft.graph.models.Event;
+import com.microsoft.graph.models.Location;
+import com.microsoft.graph.models.Recipient;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+
+// Events and helpers shared by the tests
+final class TestEvents {
+    static final ZoneId UTC = ZoneId.of("UTC");
+    static final long HOUR = 60 * 60 * 1000;
+
+    private TestEvents() {}
+
+    // A summary in UTC, with the ID as its subject
+    static EventSummary createSummary(String id, long start, long end) {
+        return createSummary(id, id, start, end);
+    }
+
+    static EventSummary createSummary(String id, String subject, long start, long end) {
+        return new EventSummary(id, "ck", subject, "Organizer", start, end, UTC);
+    }
+
+    // A Graph event with times in UTC
+    static Event createEvent(String id, String subject, String organizer, String location,
+                             String bodyPreview, LocalDateTime start, LocalDateTime end) {
+        Event event = new Event();
+        event.id = id;
+        event.subject = subject;
+        event.organizer = new Recipient();
+        event.organizer.emailAddress = new EmailAddress();
+        event.organizer.emailAddress.name = organizer;
+        event.location = new Location();
+        event.location.displayName = location;
+        event.bodyPreview = bodyPreview;
+        event.start = new DateTimeTimeZone();
+        event.start.dateTime = start.toString();
+        event.start.timeZone = "UTC";
+        event.end = new DateTimeTimeZone();
+        event.end.dateTime = end.toString();
+        event.end.timeZone = "UTC";
+        return event;
+    }
+
+    // The IDs of the events, in order, as one string
+    static String getIds(List<EventSummary> events) {
+        StringBuilder ids = new StringBuilder();
+        for (EventSummary event : events) {
+            ids.append(event.getId());
+        }
+        return ids.toString();
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.graphsample;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TokenBucketTest {
+    private long mNow = 1000;
+
+    @Test
+    public void acquire_spreadsRequestsBeyondCapacity() {
+        // 2 tokens, refilled at 10 per second
+        TokenBucket bucket = new TokenBucket(2, 10, () -> mNow);
+
+        assertEquals(0, bucket.acquire());
+        assertEquals(0, bucket.acquire());
+        assertEquals(100, bucket.acquire());
+        assertEquals(200, bucket.acquire());
+
+        // Refills only up to the capacity
+        mNow += 10000;
+        assertEquals(2, bucket.getAvailableTokens(), 0.001);
+    }
+
+    @Test
+    public void pause_holdsEveryRequestUntilItEnds() {
+        TokenBucket bucket = new TokenBucket(5, 10, () -> mNow);
+
+        bucket.pause(2000);
+        assertEquals(0, bucket.getAvailableTokens(), 0.001);
+        assertEquals(2100, bucket.acquire());
+        assertEquals(2200, bucket.acquire());
+
+        // A shorter pause doesn't end the current one early
+        mNow += 500;
+        bucket.pause(100);
+        assertEquals(1800, bucket.acquire());
+
+        mNow += 2000;
+        assertEquals(0, bucket.acquire());
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.graphsample;
+
+import org.junit.Test;
+
+import java.time.ZoneId;
+
+import static org.junit.Assert.*;
+
+public class ZoneIdResolverTest {
+    private final ZoneIdResolver mResolver = ZoneIdResolver.getInstance();
+
+    @Test
+    public void getZoneId_windowsAndIana() {
+        assertEquals(ZoneId.of("America/Los_Angeles"), mResolver.getZoneId("Pacific Standard Time"));
+        assertEquals(ZoneId.of("Europe/Paris"), mResolver.getZoneId("Europe/Paris"));
+        assertSame(mResolver.getZoneId("Pacific Standard Time"),
+                mResolver.getZoneId("Pacific Standard Time"));
+    }
+
+    @Test
+    public void getIanaFromWindows_territory() {
+        assertEquals("America/Vancouver",
+                GraphToIana.getIanaFromWindows("Pacific Standard Time", "CA"));
+        assertEquals("America/Los_Angeles",
+                GraphToIana.getIanaFromWindows("Pacific Standard Time", "FR"));
+        assertEquals("America/Los_Angeles",
+                GraphToIana.getIanaFromWindows("Pacific Standard Time", null));
+    }
+
+    @Test
+    public void getWindowsFromIana() {
+        assertEquals("Pacific Standard Time", mResolver.getWindowsFromIana("America/Los_Angeles"));
+        assertEquals("Pacific Standard Time", mResolver.getWindowsFromIana("America/Vancouver"));
+        assertEquals("Romance Standard Time", mResolver.getWindowsFromIana("Europe/Madrid"));
+        assertEquals("Eastern Standard Time", mResolver.getWindowsFromIana("Eastern Standard Time"));
+        // Alias of Asia/Calcutta, matched by its rules
+        assertEquals("India Standard Time", mResolver.getWindowsFromIana("Asia/Kolkata"));
+        assertNull(mResolver.getWindowsFromIana("Not/A_Zone"));
+    }
+}